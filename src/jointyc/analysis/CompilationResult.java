@@ -0,0 +1,86 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis;
+
+import jointyc.analysis.parser.exception.UnexpectedSymbolException;
+import jointyc.analysis.semantic.exception.SemanticException;
+
+/**
+ * Holds the outcome of the compilation of a single source in a batch (see {@link StandardCompiler#compileAll(java.util.Collection, java.util.concurrent.Executor, int)}).
+ * The outcome is either the result of the semantic analysis or the exception that stopped the compilation.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class CompilationResult {
+	private final Object result;
+	private final Exception error;
+
+	CompilationResult(Object result, Exception error) {
+		this.result = result;
+		this.error = error;
+	}
+
+	/**
+	 * Tells if the compilation succeeded.
+	 * @return true if the source was compiled without errors, false otherwise
+	 */
+	public boolean succeeded() {
+		return error == null;
+	}
+
+	/**
+	 * Gets the result of the semantic analysis.
+	 * @return the result of the compilation, or null if the compilation failed
+	 */
+	public Object result() {
+		return result;
+	}
+
+	/**
+	 * Gets the exception that stopped the compilation.
+	 * It is usually an {@link UnexpectedSymbolException} or a {@link SemanticException}.
+	 * @return the exception thrown by the compilation, or null if the compilation succeeded
+	 */
+	public Exception error() {
+		return error;
+	}
+
+	/**
+	 * Gets the result of the compilation, throwing the exception that stopped it, if any.
+	 * @return the result of the compilation
+	 * @throws UnexpectedSymbolException if the source presents syntax errors
+	 * @throws SemanticException if semantic errors were discovered
+	 */
+	public Object get() throws UnexpectedSymbolException, SemanticException {
+		if(error instanceof UnexpectedSymbolException)
+			throw (UnexpectedSymbolException) error;
+		if(error instanceof SemanticException)
+			throw (SemanticException) error;
+		if(error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		if(error != null)
+			throw new IllegalStateException(error);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return error == null ? "CompilationResult [result: " + result + "]" : "CompilationResult [error: " + error + "]";
+	}
+}
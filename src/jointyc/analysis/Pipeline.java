@@ -0,0 +1,224 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import jointyc.analysis.parser.Parser;
+import jointyc.analysis.parser.SyntaxTree;
+import jointyc.analysis.parser.exception.UnexpectedSymbolException;
+import jointyc.analysis.semantic.Interpreter;
+import jointyc.analysis.semantic.SemanticAnalyzer;
+import jointyc.analysis.semantic.exception.SemanticException;
+import jointyc.charsequence.FileCharSequence;
+
+/**
+ * Defines an ordered list of semantic passes over the syntax tree of a single parsing, such as the symbol collection,
+ * the type checking and the code generation of a compiler (see {@link StandardCompiler#pipeline(Interpreter...)}).<br>
+ * <br>
+ * Each source is parsed once, and the syntax tree is frozen (see {@link SyntaxTree#freeze()}), then every pass visits the same tree
+ * with its own {@link SemanticAnalyzer}. The passes are grouped in stages, which run in order: the passes of a stage are independent
+ * of each other, and run concurrently, so that each stage sees the effects of the previous ones on the shared state of the interpreters.<br>
+ * <br>
+ * The stages of a pipeline are immutable: the {@link #then(Interpreter)} and {@link #thenConcurrently(Interpreter...)} methods create a new pipeline
+ * with one more stage. The pipeline can be run concurrently by different threads, when the interpreters are thread-safe.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class Pipeline {
+	private final Parser parser;
+	//the analyzers of the passes, grouped by stage
+	private final SemanticAnalyzer[][] stages;
+	private final int passes;
+	private volatile Executor executor;
+
+	Pipeline(Parser parser, SemanticAnalyzer[][] stages, Executor executor){
+		this.parser = parser;
+		this.stages = stages;
+		this.executor = executor;
+
+		int passes = 0;
+		for(SemanticAnalyzer[] stage : stages)
+			passes += stage.length;
+		this.passes = passes;
+	}
+
+	/**
+	 * Creates a new pipeline that runs all the passes of this one, then the specified pass.
+	 * @param pass the interpreter of the pass
+	 * @return the new pipeline
+	 */
+	public Pipeline then(Interpreter pass){
+		return thenConcurrently(pass);
+	}
+
+	/**
+	 * Creates a new pipeline that runs all the passes of this one, then the specified passes, concurrently.
+	 * The passes must be independent of each other, since their semantic actions can be called at the same time by different threads.
+	 * @param passes the interpreters of the passes
+	 * @return the new pipeline
+	 * @throws IllegalArgumentException if no pass is specified
+	 */
+	public Pipeline thenConcurrently(Interpreter... passes){
+		if(passes.length == 0)
+			throw new IllegalArgumentException("no pass");
+
+		SemanticAnalyzer[] stage = new SemanticAnalyzer[passes.length];
+		for(int i=0; i<passes.length; i++){
+			if(passes[i] == null)
+				throw new NullPointerException("null interpreter");
+			stage[i] = new SemanticAnalyzer(passes[i], parser);
+		}
+
+		SemanticAnalyzer[][] stages = Arrays.copyOf(this.stages, this.stages.length + 1);
+		stages[this.stages.length] = stage;
+		return new Pipeline(parser, stages, executor);
+	}
+
+	/**
+	 * Parses the specified source, then runs all the passes over its syntax tree.
+	 * @param source the source to compile
+	 * @return the results of the passes, in the same order of the passes
+	 * @throws UnexpectedSymbolException if the source presents syntax errors
+	 * @throws SemanticException if a pass discovers semantic errors. The passes of the next stages are not run.
+	 */
+	public List<Object> compile(CharSequence source) throws UnexpectedSymbolException, SemanticException{
+		return analyze(parser.parse(source));
+	}
+
+	public List<Object> compile(File file) throws UnexpectedSymbolException, SemanticException, IOException{
+		return analyze(parser.parse(new FileCharSequence(file)));
+	}
+
+	/**
+	 * Runs all the passes over a syntax tree, which is frozen once before the first pass.
+	 * When more passes of a stage fail, the exception of the first failed pass is thrown.
+	 * @param tree the syntax tree to analyze
+	 * @return the results of the passes, in the same order of the passes
+	 * @throws SemanticException if a pass discovers semantic errors. The passes of the next stages are not run.
+	 */
+	public List<Object> analyze(SyntaxTree tree) throws SemanticException{
+		SyntaxTree frozen = tree.freeze();
+		Object[] results = new Object[passes];
+		int pass = 0;
+
+		for(SemanticAnalyzer[] stage : stages){
+			//the first pass of the stage runs in the current thread, while the others run in the executor
+			List<FutureTask<Object>> tasks = new ArrayList<>();
+			for(int i=1; i<stage.length; i++){
+				SemanticAnalyzer analyzer = stage[i];
+				FutureTask<Object> task = new FutureTask<>(() -> analyzer.analyze(frozen));
+				try{
+					getExecutor().execute(task);
+				}catch(RejectedExecutionException e){
+					task.run();
+				}
+				tasks.add(task);
+			}
+
+			SemanticException error = null;
+			try{
+				results[pass] = stage[0].analyze(frozen);
+			}catch(SemanticException e){
+				error = e;
+			}
+
+			for(int i=0; i<tasks.size(); i++){
+				try{
+					results[pass + i + 1] = join(tasks.get(i));
+				}catch(SemanticException e){
+					if(error == null)
+						error = e;
+				}
+			}
+			if(error != null)
+				throw error;
+			pass += stage.length;
+		}
+
+		return new ArrayList<>(Arrays.asList(results));
+	}
+
+	//waits for a pass, throwing its exception
+	private static Object join(FutureTask<Object> task) throws SemanticException{
+		boolean interrupted = false;
+		try{
+			while(true){
+				try{
+					return task.get();
+				}catch(InterruptedException e){
+					//the pass can not be abandoned, since the next stages depend on it
+					interrupted = true;
+				}
+			}
+		}catch(ExecutionException e){
+			Throwable cause = e.getCause();
+			if(cause instanceof SemanticException)
+				throw (SemanticException) cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}finally{
+			if(interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gets the number of the passes of this pipeline
+	 * @return the number of the passes
+	 */
+	public int passes(){
+		return passes;
+	}
+
+	/**
+	 * Sets the executor that runs the concurrent passes of each stage.
+	 * @param executor the executor to use, or null to use the common fork-join pool (default)
+	 */
+	public void setExecutor(Executor executor){
+		this.executor = executor;
+	}
+
+	/**
+	 * Gets the executor that runs the concurrent passes of each stage.
+	 * @return the executor used by this pipeline
+	 */
+	public Executor getExecutor(){
+		Executor executor = this.executor;
+		return executor == null ? ForkJoinPool.commonPool() : executor;
+	}
+
+	/**
+	 * Get the parser used by this pipeline
+	 * @return a {@link Parser} object
+	 */
+	public Parser getParser(){return parser;}
+}
@@ -20,7 +20,19 @@ package jointyc.analysis;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import jointyc.analysis.lexer.Lexer;
 import jointyc.analysis.parser.Parser;
@@ -33,7 +45,11 @@ import jointyc.charsequence.FileCharSequence;
 
 /**
  * Defines a standard implementation of a compiler, assembling the given parser and the given interpreter.
- * This compiler uses the standard syntax tree exploring machinery specified by {@link SemanticAnalyzer} class.
+ * This compiler uses the standard syntax tree exploring machinery specified by {@link SemanticAnalyzer} class.<br>
+ * <br>
+ * The compile methods can be invoked concurrently on the same compiler, when the parser supports
+ * concurrent parsing (see {@link Parser#parse(CharSequence)}) and the semantic actions of the interpreter are thread-safe.
+ * The compileAll methods rely on the same condition to compile a batch of sources in parallel.
  * 
  * @author Salvatore Giamp
  *
@@ -41,9 +57,10 @@ import jointyc.charsequence.FileCharSequence;
 public final class StandardCompiler implements Serializable {
 	private static final long serialVersionUID = 7410382528782276215L;
 	
-	private Parser parser;
-	private Interpreter interpreter;
-	private SemanticAnalyzer analyzer;
+	private final Parser parser;
+	private final Interpreter interpreter;
+	private final SemanticAnalyzer analyzer;
+	private volatile boolean streaming;
 	
 	public StandardCompiler(Parser parser, Interpreter interpreter){
 		if(parser == null)
@@ -57,16 +74,132 @@ public final class StandardCompiler implements Serializable {
 	}
 	
 	public Object compile(CharSequence source) throws UnexpectedSymbolException, SemanticException{
-		parser.getLexer().setInput(source);
-		SyntaxTree tree = parser.parse();
+		if(streaming)
+			return analyzer.analyze(source);
+		SyntaxTree tree = parser.parse(source);
 		return analyzer.analyze(tree);
 	}
 	
 	public Object compile(File file) throws UnexpectedSymbolException, SemanticException, IOException{
-		parser.getLexer().setInput(new FileCharSequence(file));
-		SyntaxTree tree = parser.parse();
+		if(streaming)
+			return analyzer.analyze(new FileCharSequence(file));
+		SyntaxTree tree = parser.parse(new FileCharSequence(file));
 		return analyzer.analyze(tree);
 	}
+	
+	/**
+	 * Sets the streaming mode of this compiler. In streaming mode, the semantic actions are called while the sources are parsed,
+	 * and the syntax trees are never built (see {@link SemanticAnalyzer#analyze(CharSequence)}).
+	 * The streaming mode fits the interpreters whose semantic actions have no side effects.
+	 * @param streaming true to compile in streaming mode, false to analyze the whole syntax trees (default)
+	 */
+	public void setStreaming(boolean streaming){
+		this.streaming = streaming;
+	}
+	
+	/**
+	 * Tells if this compiler is in streaming mode
+	 * @return true if the sources are compiled in streaming mode
+	 * @see #setStreaming(boolean)
+	 */
+	public boolean isStreaming(){
+		return streaming;
+	}
+
+	/**
+	 * Compiles a batch of sources in parallel, using the common fork-join pool.
+	 * @param sources the sources to compile
+	 * @return the results of the compilations, in the same order of the sources
+	 * @throws InterruptedException if the current thread is interrupted while waiting for the batch
+	 * @see #compileAll(Collection, Executor, int)
+	 */
+	public List<CompilationResult> compileAll(Collection<? extends CharSequence> sources) throws InterruptedException{
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		return compileAll(sources, pool, pool.getParallelism());
+	}
+	
+	/**
+	 * Compiles a batch of sources in parallel.
+	 * @param sources the stream of the sources to compile
+	 * @param executor the executor that runs the compilations
+	 * @param parallelism the max number of compilations running at the same time
+	 * @return the results of the compilations, in the same order of the sources
+	 * @throws InterruptedException if the current thread is interrupted while waiting for the batch
+	 * @see #compileAll(Collection, Executor, int)
+	 */
+	public List<CompilationResult> compileAll(Stream<? extends CharSequence> sources, Executor executor, int parallelism) throws InterruptedException{
+		return compileAll(sources.collect(Collectors.toList()), executor, parallelism);
+	}
+	
+	/**
+	 * Compiles a batch of sources in parallel. At most parallelism workers are submitted to the executor,
+	 * each one taking the next source of the batch until all the sources are compiled. Every compilation uses its own parsing state,
+	 * so that the workers share only the immutable grammar and the interpreter.<br>
+	 * An error in a source does not abort the batch: the exception is captured in the {@link CompilationResult} of that source.
+	 * @param sources the sources to compile
+	 * @param executor the executor that runs the compilations
+	 * @param parallelism the max number of compilations running at the same time
+	 * @return the results of the compilations, in the same order of the sources
+	 * @throws InterruptedException if the current thread is interrupted while waiting for the batch
+	 */
+	public List<CompilationResult> compileAll(Collection<? extends CharSequence> sources, Executor executor, int parallelism) throws InterruptedException{
+		if(executor == null)
+			throw new NullPointerException("null executor");
+		if(parallelism < 1)
+			throw new IllegalArgumentException("parallelism < 1");
+		
+		CharSequence[] batch = sources.toArray(new CharSequence[sources.size()]);
+		CompilationResult[] results = new CompilationResult[batch.length];
+		int workers = Math.min(parallelism, batch.length);
+		
+		AtomicInteger next = new AtomicInteger();
+		AtomicReference<Error> fatal = new AtomicReference<>();
+		CountDownLatch done = new CountDownLatch(workers);
+		
+		Runnable worker = () -> {
+			try{
+				for(int i = next.getAndIncrement(); i < batch.length && fatal.get() == null; i = next.getAndIncrement()){
+					try{
+						results[i] = new CompilationResult(compile(batch[i]), null);
+					}catch(Exception e){
+						results[i] = new CompilationResult(null, e);
+					}
+				}
+			}catch(Error e){
+				fatal.compareAndSet(null, e);
+			}finally{
+				done.countDown();
+			}
+		};
+		
+		for(int i=0; i<workers; i++){
+			try{
+				executor.execute(worker);
+			}catch(RejectedExecutionException e){
+				//the submitted workers complete the batch
+				if(i == 0) throw e;
+				for(; i<workers; i++) done.countDown();
+			}
+		}
+		done.await();
+		
+		if(fatal.get() != null)
+			throw fatal.get();
+		return new ArrayList<>(Arrays.asList(results));
+	}
+
+	/**
+	 * Creates a pipeline that parses each source once, with the parser of this compiler, then runs the specified passes in order over the same syntax tree.
+	 * The pipeline can be extended with other passes, also concurrent (see {@link Pipeline#thenConcurrently(Interpreter...)}).
+	 * @param passes the interpreters of the passes, in order
+	 * @return the new pipeline
+	 */
+	public Pipeline pipeline(Interpreter... passes){
+		Pipeline pipeline = new Pipeline(parser, new SemanticAnalyzer[0][], null);
+		for(Interpreter pass : passes)
+			pipeline = pipeline.then(pass);
+		return pipeline;
+	}
 
 	/**
 	 * Get the lexer used by this compiler
@@ -86,4 +219,10 @@ public final class StandardCompiler implements Serializable {
 	 */
 	public Interpreter getInterpreter(){return interpreter;}
 
+	/**
+	 * Get the semantic analyzer used by this compiler
+	 * @return the {@link SemanticAnalyzer} that calls the semantic actions of the interpreter
+	 */
+	public SemanticAnalyzer getAnalyzer(){return analyzer;}
+
 }
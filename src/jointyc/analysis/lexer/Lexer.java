@@ -138,6 +138,17 @@ public interface Lexer extends Cloneable{
 	 */
 	boolean next();
 	
+	/**
+	 * Get the position of the last character examined by the last call to the {@link #next()} method.
+	 * The result of the call depends only on the characters of the input from its start position to this one
+	 * (see {@link jointyc.analysis.parser.Parser#parse(CharSequence, jointyc.analysis.parser.SyntaxTree, jointyc.analysis.parser.TextEdit)}).<br>
+	 * The default implementation returns the length of the input, that is, the whole rest of the input is assumed to be examined.
+	 * @return the position of the last examined character
+	 */
+	default int lookahead() {
+		return input().length();
+	}
+	
 	
 	/**
 	 * Get the printable description associated to the specified type.
@@ -152,4 +163,26 @@ public interface Lexer extends Cloneable{
 	 * @return the regex for the specified type
 	 */
 	String regex(String type);
+	
+	/**
+	 * Creates a new lexer for the same lexicon of this one, with its own input and matching state.<br>
+	 * The lexers created in this way can be used by different threads, each one on its own input.<br>
+	 * The default implementation throws an {@link UnsupportedOperationException}.
+	 * @return a new independent lexer
+	 * @throws UnsupportedOperationException if this lexer cannot be forked
+	 * @see #canFork()
+	 */
+	default Lexer fork() {
+		throw new UnsupportedOperationException(getClass().getName() + " cannot be forked");
+	}
+	
+	/**
+	 * Tells if this lexer can be forked (see {@link #fork()}). The lexers that override the {@link #fork()} method must override this method too,
+	 * otherwise the parsers use them through the synchronized {@link #setInput(CharSequence)}, as if they could not be forked.<br>
+	 * The default implementation returns false.
+	 * @return true if the {@link #fork()} method creates a new lexer
+	 */
+	default boolean canFork() {
+		return false;
+	}
 }
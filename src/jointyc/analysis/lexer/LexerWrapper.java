@@ -96,4 +96,22 @@ public class LexerWrapper implements Lexer {
 		return lexer.regex(type);
 	}
 
+	@Override
+	public int lookahead() {
+		return lexer.lookahead();
+	}
+
+	@Override
+	public Lexer fork() {
+		Lexer forked = lexer.fork();
+		if(forked instanceof EditableLexer)
+			return wrap((EditableLexer) forked);
+		return forked;
+	}
+
+	@Override
+	public boolean canFork() {
+		return lexer.canFork();
+	}
+
 }
@@ -0,0 +1,165 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.lexer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Defines an immutable set of token types, as used by the {@link StandardLexer}.<br>
+ * <br>
+ * A lexicon does not hold any matching state, so that it can be shared by any number of lexers,
+ * also owned by different threads. The types are kept in insertion order, that is the order
+ * used by the lexers to give priority to the matched types.
+ *
+ * @author Salvatore Giamp
+ *
+ */
+public final class Lexicon {
+
+	/**
+	 * The lexicon that contains no type
+	 */
+	public static final Lexicon EMPTY = new Lexicon(new String[0], new Pattern[0], new String[0], new boolean[0]);
+
+	private final String[] types;
+	private final Pattern[] patterns;
+	private final String[] descriptions;
+	private final boolean[] skippable;
+	private final Map<String, Integer> indices;
+
+	private Lexicon(String[] types, Pattern[] patterns, String[] descriptions, boolean[] skippable) {
+		this.types = types;
+		this.patterns = patterns;
+		this.descriptions = descriptions;
+		this.skippable = skippable;
+
+		Map<String, Integer> indices = new HashMap<>();
+		for(int i=0; i<types.length; i++)
+			indices.put(types[i], i);
+		this.indices = Collections.unmodifiableMap(indices);
+	}
+
+	/**
+	 * Creates a new lexicon that contains all the types of this one, plus the specified type.
+	 * If the type is already defined, its definition is replaced, keeping its priority.
+	 * @param type the type name
+	 * @param regex the regular expression that match the type
+	 * @param description a printable description for the type
+	 * @param skip true if the tokens of this type must be skipped
+	 * @return the new lexicon
+	 * @throws PatternSyntaxException when the regex is not valid
+	 */
+	public Lexicon with(String type, String regex, String description, boolean skip) throws PatternSyntaxException {
+		Pattern pattern = Pattern.compile(regex);
+		int index = indexOf(type);
+		int size = index < 0 ? types.length + 1 : types.length;
+		if(index < 0)
+			index = types.length;
+
+		String[] types = Arrays.copyOf(this.types, size);
+		Pattern[] patterns = Arrays.copyOf(this.patterns, size);
+		String[] descriptions = Arrays.copyOf(this.descriptions, size);
+		boolean[] skippable = Arrays.copyOf(this.skippable, size);
+
+		types[index] = type;
+		patterns[index] = pattern;
+		descriptions[index] = description;
+		skippable[index] = skip;
+
+		return new Lexicon(types, patterns, descriptions, skippable);
+	}
+
+	/**
+	 * Gets the number of types in this lexicon
+	 * @return the number of types
+	 */
+	public int size() {
+		return types.length;
+	}
+
+	/**
+	 * Gets the index of the specified type, that is its priority (lower indices come first).
+	 * @param type the type name
+	 * @return the index of the type, or -1 if the type is not defined
+	 */
+	public int indexOf(String type) {
+		Integer index = indices.get(type);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Gets the name of the type at the specified index
+	 * @param index the index of the type
+	 * @return the type name
+	 */
+	public String type(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Gets the compiled regular expression of the type at the specified index
+	 * @param index the index of the type
+	 * @return the pattern of the type
+	 */
+	public Pattern pattern(int index) {
+		return patterns[index];
+	}
+
+	/**
+	 * Gets the description of the type at the specified index
+	 * @param index the index of the type
+	 * @return the description of the type
+	 */
+	public String description(int index) {
+		return descriptions[index];
+	}
+
+	/**
+	 * Tells if the type at the specified index must be skipped
+	 * @param index the index of the type
+	 * @return true if the tokens of the type are skipped, false otherwise
+	 */
+	public boolean skippable(int index) {
+		return skippable[index];
+	}
+
+	/**
+	 * Get the printable description associated to the specified type.
+	 * @param type the type name
+	 * @return the description for the specified type, or null if the type is not defined
+	 */
+	public String description(String type) {
+		int index = indexOf(type);
+		return index < 0 ? null : descriptions[index];
+	}
+
+	/**
+	 * Get the regex associated to the specified type
+	 * @param type the type name
+	 * @return the regex for the specified type, or null if the type is not defined
+	 */
+	public String regex(String type) {
+		int index = indexOf(type);
+		return index < 0 ? null : patterns[index].toString();
+	}
+}
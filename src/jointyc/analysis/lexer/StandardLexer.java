@@ -17,16 +17,10 @@
 
 package jointyc.analysis.lexer;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
@@ -37,61 +31,90 @@ import java.util.regex.PatternSyntaxException;
  * <br>
  * For instance, if only the white spaces must be skipped, it could be defined the following rule: <br><code>lexer.addType("erroneous", "[^\s]");</code>
  * <br>
+ * The token types are stored in an immutable {@link Lexicon}, while the lexer holds only the matching state of its input.
+ * The lexers created by the {@link #fork()} method share the lexicon with this one, and can be used by other threads.
+ * <br>
  * @author Salvatore Giamp
  *
  */
 public final class StandardLexer implements EditableLexer{
 	
-	private static class RegexEntry{
-		public final String type;
-		public final Pattern regex;
-		
-		public RegexEntry(String type, Pattern regex){
-			this.type = type;
-			this.regex = regex;
-		}
-	}
+	private Lexicon lexicon;
 	
 	private CharSequence input;
 	private String token;
-	private String tokenType;
+	private int tokenIndex = -1;
 	private int position;
 	private int end;
+	private int lookahead;
 	
 	/*
-	 * Not a map, but a list, so it's possible to give priority to mached types, according to the insertion order.
-	 * Evaluating the use of a LinkedHashMap
+	 * A matcher for each type of the lexicon, at the same index of the type.
+	 * The matched flags mark the types that matched a token at the current position.
 	 */
-	private List<RegexEntry> regexTable =  new LinkedList<>();
+	private Matcher[] matchers = new Matcher[0];
+	private boolean[] matched = new boolean[0];
 	
-	private Map<String,String> labelTable = new HashMap<>();
-	private Map<String,String> descriptionTable = new HashMap<>();
-	
-	private Set<String> typeSet = new HashSet<>();
-	private Set<String> skippableSet = new HashSet<>();
-	private Map<String, Matcher> matcherMap = new HashMap<>();
+	/*
+	 * The matchers that repeat the searches of the last call to next() on a prefix of the input, to find the characters the searches depended on.
+	 * When a probe does not hit the end of the prefix, its search does not depend on the characters following the prefix.
+	 */
+	private final Prefix prefix = new Prefix();
+	private Matcher[] probes = new Matcher[0];
 	
 	public void setInput(CharSequence input) throws PatternSyntaxException{
 		this.input = input;
+		prefix.input = input;
 		
-		matcherMap.clear();
-		position = end = 0;
+		position = end = lookahead = 0;
+		token = null;
+		tokenIndex = -1;
 		
-		for(RegexEntry e : regexTable)
-			matcherMap.put(e.type, e.regex.matcher(input));
+		matchers = new Matcher[lexicon.size()];
+		matched = new boolean[lexicon.size()];
+		probes = new Matcher[lexicon.size()];
+		for(int i=0; i<matchers.length; i++) {
+			matchers[i] = lexicon.pattern(i).matcher(input);
+			probes[i] = probe(i);
+		}
+	}
+	
+	//creates the probe of a type, whose searches see the characters that precede and follow their regions
+	private Matcher probe(int index) {
+		return lexicon.pattern(index).matcher(prefix).useTransparentBounds(true).useAnchoringBounds(false);
 	}
 	
 	public StandardLexer(){
+		this(Lexicon.EMPTY);
+	}
+
+	/**
+	 * Construct a lexer that uses the specified lexicon
+	 * @param lexicon the lexicon to use
+	 */
+	public StandardLexer(Lexicon lexicon){
+		if(lexicon == null)
+			throw new NullPointerException("null lexicon");
+		this.lexicon = lexicon;
+	}
+
+	/**
+	 * Gets the lexicon currently used by this lexer
+	 * @return the immutable lexicon of this lexer
+	 */
+	public Lexicon lexicon(){
+		return lexicon;
 	}
 
 	@Override
 	public final String token(String type){
-		if(!typeSet.contains(type)) return null;
-		Matcher matcher = matcherMap.get(type);
+		int index = lexicon.indexOf(type);
+		if(index < 0 || !matched[index]) return null;
+		Matcher matcher = matchers[index];
 		String token = matcher.group();
 		if(token != null){
 			this.token = token;
-			tokenType = type;
+			tokenIndex = index;
 			end = matcher.end();
 		}
 		return token;
@@ -100,14 +123,14 @@ public final class StandardLexer implements EditableLexer{
 	@Override
 	public final String token(){
 		if(token == null) return null;
-		Matcher matcher = matcherMap.get(tokenType);
+		Matcher matcher = matchers[tokenIndex];
 		end = matcher.start() + token.length();
 		return token;
 	}
 
 	@Override
 	public final String tokenType(){
-		return tokenType;
+		return tokenIndex < 0 ? null : lexicon.type(tokenIndex);
 	}
 
 	@Override
@@ -133,45 +156,50 @@ public final class StandardLexer implements EditableLexer{
 	public boolean next(){
 		
 		int start;
+		boolean found;
 		boolean skippable;
 		
+		lookahead = end;
 		do{
-			typeSet.clear();
 			start = Integer.MAX_VALUE;
+			found = false;
 			skippable = false;
 			
-			for(Entry<String, Matcher> e : matcherMap.entrySet()){
-				Matcher m = e.getValue();
-				if(m.find(end)){
-					typeSet.add(e.getKey());
+			for(int i=0; i<matchers.length; i++){
+				Matcher m = matchers[i];
+				matched[i] = m.find(end);
+				if(matched[i]){
+					found = true;
 					if(m.start() < start){
 						start = m.start();
 					}
 				}
 			}
 		
-			Iterator<String> it = typeSet.iterator();
-			while(it.hasNext()){
-				String type = it.next();
-				Matcher m = matcherMap.get(type);
-				if(m.start() > start)
-					it.remove();
+			int longest = end;
+			for(int i=0; i<matchers.length; i++){
+				if(matched[i] && matchers[i].start() > start)
+					matched[i] = false;
+				else if(matched[i] && matchers[i].end() > longest)
+					longest = matchers[i].end();
 			}
+			if(found)
+				lookahead = Math.max(lookahead, examined(end, start, longest));
 			
-			for(String type : skippableSet)
-				if(typeSet.contains(type)){
-					end = matcherMap.get(type).end();
+			for(int i=0; i<matchers.length; i++)
+				if(matched[i] && lexicon.skippable(i)){
+					end = matchers[i].end();
 					skippable = true;
 					break;
 				}
 			
 		}while(skippable);
 		
-		if(typeSet.size()>0){
-			for(RegexEntry e : regexTable){
-				if(typeSet.contains(e.type)){
-					token = matcherMap.get(e.type).group();
-					tokenType = e.type;
+		if(found){
+			for(int i=0; i<matchers.length; i++){
+				if(matched[i]){
+					token = matchers[i].group();
+					tokenIndex = i;
 					break;
 				}
 			}
@@ -180,36 +208,82 @@ public final class StandardLexer implements EditableLexer{
 		}
 		
 		token = null;
-		tokenType = null;
+		tokenIndex = -1;
 		position = input.length();
 		end = input.length();
+		lookahead = input.length();
 		
 		return false;
 	}
+	
+	/**
+	 * Finds the last character the searches of the types depended on, when they chose the tokens at the start position.
+	 * The searches of all the types are repeated at the positions from the search position to the start one, on prefixes of the input,
+	 * starting from the one that ends with the character following the longest token, and doubling the part that follows the start position
+	 * until no search hits the end of the prefix.
+	 * @param from the position where the searches started
+	 * @param start the start of the chosen tokens
+	 * @param longest the end of the longest token
+	 * @return the position of the last character the searches depended on, or the length of the input
+	 */
+	private int examined(int from, int start, int longest) {
+		int length = input.length();
+		for(int limit = longest + 1; limit < length; limit += Math.max(limit - start, 1)) {
+			if(!hitsEnd(from, start, limit))
+				return limit - 1;
+		}
+		return length;
+	}
+	
+	//tells if some search of a type at the positions from the search position to the start one hits the end of a prefix of the input
+	private boolean hitsEnd(int from, int start, int limit) {
+		prefix.length = limit;
+		for(Matcher probe : probes) {
+			for(int p=from; p<=start; p++) {
+				probe.region(p, limit);
+				probe.lookingAt();
+				if(probe.hitEnd())
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the position of the last character examined by the last call to the {@link #next()} method.<br>
+	 * The returned position is the last character that the searches of all the types depended on, when they chose the tokens at the current position,
+	 * including the searches that failed or found a later token. It is at least the character following the longest token matched at the current position.
+	 */
+	@Override
+	public int lookahead(){
+		return lookahead;
+	}
 
 	public void addAlias(String newType, String refType){
 	}
 	
 	public void addType(String type, String regex, String description, boolean skip) throws PatternSyntaxException{
-		regexTable.add(new RegexEntry(type, Pattern.compile(regex)));
-		descriptionTable.put(type, description);
+		lexicon = lexicon.with(type, regex, description, skip);
 		
-		if(input != null)
-			matcherMap.put(type, Pattern.compile(regex).matcher(input));
-		
-		if(skip)
-			skippableSet.add(type);
-		else
-			skippableSet.remove(type);
+		if(input != null){
+			int index = lexicon.indexOf(type);
+			matchers = Arrays.copyOf(matchers, lexicon.size());
+			matched = Arrays.copyOf(matched, lexicon.size());
+			probes = Arrays.copyOf(probes, lexicon.size());
+			matchers[index] = lexicon.pattern(index).matcher(input);
+			matched[index] = false;
+			probes[index] = probe(index);
+		}
 	}
 
 	@Override
 	public void resetTypes() {
-		regexTable.clear();
-		matcherMap.clear();
-		skippableSet.clear();
-		descriptionTable.clear();
-		labelTable.clear();
+		lexicon = Lexicon.EMPTY;
+		matchers = new Matcher[0];
+		matched = new boolean[0];
+		probes = new Matcher[0];
+		token = null;
+		tokenIndex = -1;
 	}
 	
 	@Override
@@ -221,10 +295,10 @@ public final class StandardLexer implements EditableLexer{
 	public Set<String> similarTypes() {
 		Set<String> set = new HashSet<>();
 		
-		for(String type : typeSet){
-			Matcher m = matcherMap.get(type);
-			if(m.start() == position && m.end()==end)
-				set.add(type);
+		for(int i=0; i<matchers.length; i++){
+			Matcher m = matchers[i];
+			if(matched[i] && m.start() == position && m.end()==end)
+				set.add(lexicon.type(i));
 		}
 		
 		return set;
@@ -232,36 +306,66 @@ public final class StandardLexer implements EditableLexer{
 
 	@Override
 	public String description(String type) {
-		return descriptionTable.get(type);
+		return lexicon.description(type);
 	}
 	
+	/**
+	 * Creates a new lexer that shares the lexicon of this one. The new lexer has no input.
+	 * @return a new lexer for the same lexicon
+	 */
+	@Override
+	public StandardLexer fork() {
+		return new StandardLexer(lexicon);
+	}
+	
+	@Override
+	public boolean canFork() {
+		return true;
+	}
 	
 	@Override
 	protected StandardLexer clone() {
-		StandardLexer lexer;
-		try {
-			lexer = (StandardLexer) super.clone();
-
-			lexer.regexTable =  new LinkedList<>(regexTable);
-			lexer.labelTable = new HashMap<>(labelTable);
-			lexer.descriptionTable = new HashMap<>(descriptionTable);
-			lexer.typeSet = new HashSet<>(typeSet);
-			lexer.matcherMap = new HashMap<>(matcherMap);
-			lexer.skippableSet = new HashSet<>(skippableSet);
-			
-		} catch (CloneNotSupportedException e) {
-			e.printStackTrace();
-			return null;
+		StandardLexer lexer = fork();
+		if(input != null){
+			lexer.setInput(input);
+			lexer.setStart(end);
 		}
 		return lexer;
 	}
 
 	@Override
 	public String regex(String type) {
-		for(RegexEntry e : regexTable)
-			if(e.type.equals(type))
-				return e.regex.toString();
-		return null;
+		return lexicon.regex(type);
+	}
+
+	//a prefix of the input, whose length is changed by the probes
+	private static final class Prefix implements CharSequence {
+		CharSequence input;
+		int length;
+		
+		@Override
+		public int length() {
+			return length;
+		}
+		
+		@Override
+		public char charAt(int index) {
+			if(index >= length)
+				throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+			return input.charAt(index);
+		}
+		
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if(end > length)
+				throw new IndexOutOfBoundsException("end: " + end + ", length: " + length);
+			return input.subSequence(start, end);
+		}
+		
+		@Override
+		public String toString() {
+			return input.subSequence(0, length).toString();
+		}
 	}
 
 	/*
@@ -0,0 +1,262 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a syntax tree stored in a {@link SyntaxArena}.<br>
+ * During the parsing, the nodes are appended as records to parallel arrays, and their handles are the record numbers.
+ * The children of each non-terminal record are copied in a shared pool. The records of the failed productions are left behind,
+ * and the tree is compacted in preorder when it is completed, so that the arena contains only the reachable nodes.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class ArenaBuilder extends TreeBuilder<Integer> {
+
+	//types and similar types tables
+	private final Map<String, Integer> typeIds = new HashMap<>();
+	private final List<String> types = new ArrayList<>();
+	private final Map<Set<String>, Integer> similarIds = new HashMap<>();
+	private final List<Set<String>> similarTypes = new ArrayList<>();
+
+	//records
+	private int records;
+	private int[] type = new int[64];
+	private int[] start = new int[64];
+	private int[] end = new int[64];
+	private int[] lookahead = new int[64];
+	private int[] flags = new int[64];
+	private int[] children = new int[64]; //index of the first child in the pool, or similar types of the terminals
+	private int[] production = new int[64];
+
+	//children stack and pool
+	private int stackSize;
+	private int[] stack = new int[64];
+	private int poolSize;
+	private int[] pool = new int[64];
+
+	ArenaBuilder(ParsedInput input) {
+		super(input);
+	}
+	
+	/**
+	 * Copies a syntax tree into a new arena, whose input has no lexer.
+	 * @param tree the tree to freeze
+	 * @return the frozen tree
+	 * @see SyntaxTree#freeze()
+	 */
+	static SyntaxTree freeze(SyntaxTree tree) {
+		if(tree instanceof CompactSyntaxTree && ((CompactSyntaxTree) tree).arena.input.lexer == null)
+			return tree;
+		return compact(tree);
+	}
+	
+	/**
+	 * Gets a syntax tree as the root of an arena whose input has no lexer, copying it if necessary.
+	 * @param tree the tree to copy
+	 * @return the root of the arena
+	 */
+	static CompactSyntaxTree compact(SyntaxTree tree) {
+		if(tree instanceof CompactSyntaxTree) {
+			CompactSyntaxTree compact = (CompactSyntaxTree) tree;
+			SyntaxArena arena = compact.arena;
+			//a whole compact tree shares the columns of its arena
+			if(compact.node == 0)
+				return arena.input.lexer == null ? compact : arena.withInput(new ParsedInput(arena.input.source, null, arena.input.grammar)).cursor(0);
+		}
+		
+		ArenaBuilder builder = new ArenaBuilder(new ParsedInput(tree.source(), null, tree.grammar()));
+		if(tree.terminal()) {
+			//a terminal root is the only record of the arena
+			builder.terminal(tree.type(), tree.start(), tree.end(), tree.similarTypes());
+			return builder.tree(builder.stack[0]);
+		}
+		return builder.tree(builder.copy(tree));
+	}
+	
+	private int copy(SyntaxTree tree) {
+		int mark = mark();
+		for(SyntaxTree next : tree) {
+			if(next.terminal())
+				terminal(next.type(), next.start(), next.end(), next.similarTypes());
+			else
+				push(copy(next));
+		}
+		return node(mark, tree.type(), tree.start(), tree.end(), tree.end(), tree.production());
+	}
+
+	private int typeId(String type) {
+		Integer id = typeIds.get(type);
+		if(id == null) {
+			id = types.size();
+			typeIds.put(type, id);
+			types.add(type);
+		}
+		return id;
+	}
+
+	private int similarId(Set<String> similar) {
+		Integer id = similarIds.get(similar);
+		if(id == null) {
+			id = similarTypes.size();
+			similarIds.put(similar, id);
+			similarTypes.add(Collections.unmodifiableSet(similar));
+		}
+		return id;
+	}
+
+	private int record(String type, int start, int end, int lookahead, int flags, int children, int production) {
+		if(records == this.type.length) {
+			int capacity = records*2;
+			this.type = Arrays.copyOf(this.type, capacity);
+			this.start = Arrays.copyOf(this.start, capacity);
+			this.end = Arrays.copyOf(this.end, capacity);
+			this.lookahead = Arrays.copyOf(this.lookahead, capacity);
+			this.flags = Arrays.copyOf(this.flags, capacity);
+			this.children = Arrays.copyOf(this.children, capacity);
+			this.production = Arrays.copyOf(this.production, capacity);
+		}
+		this.type[records] = typeId(type);
+		this.start[records] = start;
+		this.end[records] = end;
+		this.lookahead[records] = lookahead;
+		this.flags[records] = flags;
+		this.children[records] = children;
+		this.production[records] = production;
+		return records++;
+	}
+
+	private void push(int record) {
+		if(stackSize == stack.length)
+			stack = Arrays.copyOf(stack, stackSize*2);
+		stack[stackSize++] = record;
+	}
+
+	@Override
+	int mark() {
+		return stackSize;
+	}
+
+	@Override
+	void reset(int mark) {
+		stackSize = mark;
+	}
+
+	@Override
+	void terminal(String type, int start, int end, Set<String> similarTypes) {
+		push(record(type, start, end, end, SyntaxArena.TERMINAL, similarId(similarTypes), -1));
+	}
+
+	@Override
+	void child(Integer node) {
+		push(node);
+	}
+
+	@Override
+	Integer node(int mark, String type, int start, int end, int lookahead, int production) {
+		int count = stackSize - mark;
+		if(poolSize + count > pool.length)
+			pool = Arrays.copyOf(pool, Math.max(pool.length*2, poolSize + count));
+		System.arraycopy(stack, mark, pool, poolSize, count);
+
+		int record = record(type, start, end, lookahead, count << 1, poolSize, production);
+		poolSize += count;
+		stackSize = mark;
+		return record;
+	}
+
+	@Override
+	int end(Integer node) {
+		return end[node];
+	}
+
+	@Override
+	int lookahead(Integer node) {
+		return lookahead[node];
+	}
+
+	@Override
+	CompactSyntaxTree tree(Integer root) {
+		if(root == null)
+			return null;
+
+		int capacity = 16;
+		int size = 0;
+		int[] type = new int[capacity], start = new int[capacity], end = new int[capacity],
+				next = new int[capacity], flags = new int[capacity], similar = new int[capacity];
+		int[] lastChild = new int[capacity];
+
+		//pending records, with the number of their parent node
+		stackSize = 0;
+		push(root);
+		push(-1);
+
+		while(stackSize > 0) {
+			int parent = stack[--stackSize];
+			int record = stack[--stackSize];
+
+			if(size == capacity) {
+				capacity *= 2;
+				type = Arrays.copyOf(type, capacity);
+				start = Arrays.copyOf(start, capacity);
+				end = Arrays.copyOf(end, capacity);
+				next = Arrays.copyOf(next, capacity);
+				flags = Arrays.copyOf(flags, capacity);
+				similar = Arrays.copyOf(similar, capacity);
+				lastChild = Arrays.copyOf(lastChild, capacity);
+			}
+
+			int node = size++;
+			boolean terminal = (this.flags[record] & SyntaxArena.TERMINAL) != 0;
+			type[node] = this.type[record];
+			start[node] = this.start[record];
+			end[node] = this.end[record];
+			flags[node] = this.flags[record];
+			similar[node] = terminal ? this.children[record] : this.production[record];
+			next[node] = -1;
+			lastChild[node] = -1;
+
+			if(parent >= 0) {
+				if(lastChild[parent] >= 0)
+					next[lastChild[parent]] = node;
+				lastChild[parent] = node;
+			}
+
+			if(!terminal) {
+				//the children are pushed from the last one, so that they are numbered in order
+				int first = this.children[record];
+				for(int i = (this.flags[record] >>> 1) - 1; i >= 0; i--) {
+					push(pool[first + i]);
+					push(node);
+				}
+			}
+		}
+
+		return new ArraySyntaxArena(input, types.toArray(new String[types.size()]), Collections.unmodifiableList(similarTypes), size,
+				Arrays.copyOf(type, size), Arrays.copyOf(start, size), Arrays.copyOf(end, size),
+				Arrays.copyOf(next, size), Arrays.copyOf(flags, size), Arrays.copyOf(similar, size)).cursor(0);
+	}
+}
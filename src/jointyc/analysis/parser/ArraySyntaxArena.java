@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementation of a {@link SyntaxArena} that stores the columns of the nodes in arrays.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class ArraySyntaxArena extends SyntaxArena {
+	private static final long serialVersionUID = 4376154326290618345L;
+
+	private final int[] type;
+	private final int[] start;
+	private final int[] end;
+	private final int[] next;
+	private final int[] flags;
+	private final int[] similar;
+
+	ArraySyntaxArena(ParsedInput input, String[] types, List<Set<String>> similarTypes,
+			int size, int[] type, int[] start, int[] end, int[] next, int[] flags, int[] similar) {
+		super(input, types, similarTypes, size);
+		this.type = type;
+		this.start = start;
+		this.end = end;
+		this.next = next;
+		this.flags = flags;
+		this.similar = similar;
+	}
+
+	@Override
+	int typeId(int node) {
+		return type[node];
+	}
+
+	@Override
+	int start(int node) {
+		return start[node];
+	}
+
+	@Override
+	int end(int node) {
+		return end[node];
+	}
+
+	@Override
+	int next(int node) {
+		return next[node];
+	}
+
+	@Override
+	int flags(int node) {
+		return flags[node];
+	}
+
+	@Override
+	int similarId(int node) {
+		return similar[node];
+	}
+
+	@Override
+	SyntaxArena withInput(ParsedInput input) {
+		return new ArraySyntaxArena(input, types, similarTypes, size, type, start, end, next, flags, similar);
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.Set;
+
+import jointyc.analysis.lexer.Lexer;
+import jointyc.charsequence.LineIndex;
+
+/**
+ * Implementation of a {@link SyntaxTree} for the trees stored in a {@link SyntaxArena}.<br>
+ * A compact syntax tree is a cursor holding only the arena and the number of the node, so that the cursors
+ * are created on demand, when a tree is explored, and two cursors of the same node are equal.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class CompactSyntaxTree implements SyntaxTree {
+	private static final long serialVersionUID = -1452520453566779614L;
+
+	final SyntaxArena arena;
+	final int node;
+
+	CompactSyntaxTree(SyntaxArena arena, int node) {
+		this.arena = arena;
+		this.node = node;
+	}
+
+	@Override
+	public SyntaxIterator iterator() {
+		return new SyntaxIterator(arena.children(node), false);
+	}
+
+	@Override
+	public SyntaxIterator iteratorFromLast() {
+		return new SyntaxIterator(arena.children(node), true);
+	}
+
+	@Override
+	public boolean terminal() {
+		return arena.terminal(node);
+	}
+
+	@Override
+	public String type() {
+		return arena.type(node);
+	}
+
+	@Override
+	public Set<String> similarTypes() {
+		return arena.similarTypes(node);
+	}
+
+	@Override
+	public int nexts() {
+		return arena.nexts(node);
+	}
+
+	@Override
+	public int start() {
+		return arena.start(node);
+	}
+
+	@Override
+	public int end() {
+		return arena.end(node);
+	}
+
+	@Override
+	public CharSequence token() {
+		int start = arena.start(node), end = arena.end(node);
+		if(start <= end)
+			return arena.input.source.subSequence(start, end+1);
+		else
+			return "";
+	}
+
+	@Override
+	public CharSequence source() {
+		return arena.input.source;
+	}
+
+	@Override
+	public Lexer lexer() {
+		return arena.input.lexer;
+	}
+
+	@Override
+	public LineIndex lineIndex() {
+		return arena.input.lineIndex();
+	}
+
+	@Override
+	public String internedToken() {
+		return arena.input.interner().intern(this);
+	}
+
+	@Override
+	public int production() {
+		return arena.production(node);
+	}
+
+	@Override
+	public Grammar grammar() {
+		return arena.input.grammar;
+	}
+
+	@Override
+	public SyntaxIndex index() {
+		return node == 0 ? arena.input.index(this) : new SyntaxIndex(this);
+	}
+
+	private String toString(int level){
+		StringBuilder sb = new StringBuilder();
+		sb.append("|\n|\n");
+		for(int i = 0; i<=level; i++)
+			sb.append("|________");
+		sb.append("> ");
+
+		sb.append(String.format("token=\"%s\", type=%s, similarTypes=%s, [start,end]=[%d,%d], terminal=%s", token().toString().replaceAll("\\n", "\\\\n"), type(), terminal() ? similarTypes() : null, start(), end(), terminal()));
+		sb.append('\n');
+
+		for(SyntaxTree subtree : this){
+			sb.append(((CompactSyntaxTree) subtree).toString(level+1));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return token()+"\n"+toString(0);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(arena) + node;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(!(obj instanceof CompactSyntaxTree))
+			return false;
+		CompactSyntaxTree other = (CompactSyntaxTree) obj;
+		return arena == other.arena && node == other.node;
+	}
+}
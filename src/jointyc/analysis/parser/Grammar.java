@@ -0,0 +1,192 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Defines an immutable snapshot of the rules of a {@link StandardParser}.<br>
+ * A grammar holds no parsing state, so it can be shared by any number of threads, each one
+ * parsing its own input. The production symbols are resolved once, when the snapshot is created,
+ * so that the parsing does not need to distinguish terminal and non-terminal symbols by their prefix.
+ *
+ * @author Salvatore Giamp
+ *
+ */
+public final class Grammar {
+
+	//a production whose symbols are resolved against the rule heads of the grammar
+	static final class Production {
+		final int id;
+		final int head;
+		final List<String> production;
+		final String[] symbols;
+		final boolean[] terminal;
+		final int[] heads;
+
+		Production(int id, int head, List<String> production, Map<String, Integer> headIds) {
+			this.id = id;
+			this.head = head;
+			this.production = production;
+			this.symbols = new String[production.size()];
+			this.terminal = new boolean[production.size()];
+			this.heads = new int[production.size()];
+
+			for(int i=0; i<symbols.length; i++) {
+				String product = production.get(i);
+				terminal[i] = product.startsWith(EditableParser.TERMINAL_PREFIX);
+				if(terminal[i]) {
+					symbols[i] = product.substring(EditableParser.TERMINAL_PREFIX.length());
+					heads[i] = -1;
+				}
+				else {
+					symbols[i] = product;
+					Integer headId = headIds.get(product);
+					heads[i] = headId == null ? -1 : headId;
+				}
+			}
+		}
+
+		int length() {
+			return symbols.length;
+		}
+
+		@Override
+		public String toString() {
+			return production.toString();
+		}
+	}
+
+	private final String axiom;
+	private final Map<String, Integer> headIds;
+	final String[] heads;
+	final Production[][] productions;
+	private final Production[] ids;
+
+	/**
+	 * Creates a grammar snapshot.
+	 * @param rules the productions of each rule head, in order of priority
+	 * @param axiom the axiom of the grammar
+	 */
+	Grammar(Map<String, ? extends List<? extends List<String>>> rules, String axiom) {
+		this.axiom = axiom;
+		this.heads = rules.keySet().toArray(new String[rules.size()]);
+
+		Map<String, Integer> headIds = new HashMap<>();
+		for(int i=0; i<heads.length; i++)
+			headIds.put(heads[i], i);
+		this.headIds = Collections.unmodifiableMap(headIds);
+
+		this.productions = new Production[heads.length][];
+		List<Production> ids = new ArrayList<>();
+		for(int i=0; i<heads.length; i++) {
+			List<? extends List<String>> alternatives = rules.get(heads[i]);
+			productions[i] = new Production[alternatives.size()];
+			for(int j=0; j<productions[i].length; j++) {
+				productions[i][j] = new Production(ids.size(), i, alternatives.get(j), headIds);
+				ids.add(productions[i][j]);
+			}
+		}
+		this.ids = ids.toArray(new Production[ids.size()]);
+	}
+
+	/**
+	 * Gets the index of the specified rule head in this grammar.
+	 * @param head the rule head
+	 * @return the index of the rule head, or -1 if no rule is defined for the head
+	 */
+	int headId(String head) {
+		Integer id = headIds.get(head);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the axiom of this grammar.
+	 * @return the starting rule head
+	 */
+	public String getAxiom() {
+		return axiom;
+	}
+
+	/**
+	 * Gets the productions associated to the specified rule head.
+	 * @param head the head of the rule
+	 * @return the list of production lists, or an empty list if the rule does not exist
+	 * @see Parser#getRule(String)
+	 */
+	public List<List<String>> getRule(String head) {
+		int id = headId(head);
+		if(id < 0)
+			return Collections.emptyList();
+
+		List<List<String>> productions = new ArrayList<>();
+		for(Production production : this.productions[id])
+			productions.add(production.production);
+		return productions;
+	}
+
+	/**
+	 * Gets the number of the productions of this grammar.
+	 * The productions are numbered from 0, following the order of the rule heads and the priority of the productions.
+	 * @return the number of the productions
+	 * @see SyntaxTree#production()
+	 */
+	public int productionCount() {
+		return ids.length;
+	}
+
+	/**
+	 * Gets the head of a production.
+	 * @param id the number of the production
+	 * @return the rule head of the production
+	 */
+	public String productionHead(int id) {
+		return heads[ids[id].head];
+	}
+
+	/**
+	 * Gets the body of a production.
+	 * The returned production list adheres to the logic of {@link EditableParser#addRule(String, String...)}, to distinguish terminal tokens from non-terminal ones.
+	 * @param id the number of the production
+	 * @return the production list
+	 */
+	public List<String> production(int id) {
+		return ids[id].production;
+	}
+
+	/**
+	 * Check the existence of at least a production rule for the specified non-terminal token.
+	 * @param head the head of the productions rules to be checked
+	 * @param production the elements of the production body
+	 * @return true if the specified non-terminal token produces something, false otherwise.
+	 * @see Parser#ruleExists(String, String...)
+	 */
+	public boolean ruleExists(String head, String... production) {
+		int id = headId(head);
+		if(id < 0) return false;
+		for(Production p : productions[id])
+			if(p.production.containsAll(Arrays.asList(production)))
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.io.ObjectStreamException;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementation of a {@link SyntaxArena} that reads the columns of the nodes from buffers,
+ * usually views of a file mapped in memory by {@link SyntaxTreeFile}.<br>
+ * The buffers are accessed only by absolute positions, so they can be shared among threads.
+ * When serialized, the arena is replaced by a copy that stores its columns in arrays.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class MappedSyntaxArena extends SyntaxArena {
+	private static final long serialVersionUID = -2151263593046519340L;
+
+	private final transient IntBuffer type;
+	private final transient IntBuffer start;
+	private final transient IntBuffer end;
+	private final transient IntBuffer next;
+	private final transient IntBuffer flags;
+	private final transient IntBuffer similar;
+
+	MappedSyntaxArena(ParsedInput input, String[] types, List<Set<String>> similarTypes,
+			int size, IntBuffer type, IntBuffer start, IntBuffer end, IntBuffer next, IntBuffer flags, IntBuffer similar) {
+		super(input, types, similarTypes, size);
+		this.type = type;
+		this.start = start;
+		this.end = end;
+		this.next = next;
+		this.flags = flags;
+		this.similar = similar;
+	}
+
+	@Override
+	int typeId(int node) {
+		return type.get(node);
+	}
+
+	@Override
+	int start(int node) {
+		return start.get(node);
+	}
+
+	@Override
+	int end(int node) {
+		return end.get(node);
+	}
+
+	@Override
+	int next(int node) {
+		return next.get(node);
+	}
+
+	@Override
+	int flags(int node) {
+		return flags.get(node);
+	}
+
+	@Override
+	int similarId(int node) {
+		return similar.get(node);
+	}
+
+	@Override
+	SyntaxArena withInput(ParsedInput input) {
+		return new MappedSyntaxArena(input, types, similarTypes, size, type, start, end, next, flags, similar);
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		int[][] columns = new int[6][size];
+		IntBuffer[] buffers = {type, start, end, next, flags, similar};
+		for(int i=0; i<columns.length; i++)
+			buffers[i].duplicate().get(columns[i]);
+		return new ArraySyntaxArena(new ParsedInput(input.source.toString(), input.lexer, input.grammar), types, similarTypes, size,
+				columns[0], columns[1], columns[2], columns[3], columns[4], columns[5]);
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds a syntax tree made of linked {@link SyntaxNode} objects, which are their own handles.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class NodeBuilder extends TreeBuilder<SyntaxNode> {
+	private final ArrayList<SyntaxNode> stack = new ArrayList<>();
+
+	NodeBuilder(ParsedInput input) {
+		super(input);
+	}
+
+	@Override
+	int mark() {
+		return stack.size();
+	}
+
+	@Override
+	void reset(int mark) {
+		stack.subList(mark, stack.size()).clear();
+	}
+
+	@Override
+	void terminal(String type, int start, int end, Set<String> similarTypes) {
+		SyntaxNode node = new SyntaxNode(input);
+		node.terminal = true;
+		node.type = type;
+		node.start = start;
+		node.end = end;
+		node.similarTypes = similarTypes;
+		stack.add(node);
+	}
+
+	@Override
+	void child(SyntaxNode node) {
+		stack.add(node);
+	}
+
+	@Override
+	SyntaxNode node(int mark, String type, int start, int end, int lookahead, int production) {
+		SyntaxNode node = new SyntaxNode(input);
+		node.type = type;
+		node.production = production;
+		node.start = start;
+		node.end = end;
+		node.lookahead = lookahead;
+
+		List<SyntaxNode> children = stack.subList(mark, stack.size());
+		node.nexts.addAll(children);
+		children.clear();
+		return node;
+	}
+
+	@Override
+	int end(SyntaxNode node) {
+		return node.end;
+	}
+
+	@Override
+	int lookahead(SyntaxNode node) {
+		return node.lookahead;
+	}
+
+	@Override
+	SyntaxTree tree(SyntaxNode root) {
+		input.root = root;
+		return root;
+	}
+}
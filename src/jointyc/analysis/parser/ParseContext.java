@@ -0,0 +1,392 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import jointyc.analysis.lexer.Lexer;
+import jointyc.analysis.parser.Grammar.Production;
+import jointyc.analysis.parser.exception.UnexpectedSymbolException;
+import jointyc.analysis.parser.exception.UnexpectedSymbolException.ExpectedTerminal;
+
+/**
+ * Holds the state of a single parsing of a {@link Grammar}: the lexer positioned on the input,
+ * the cache of the already visited syntax structures and the expected terminals collected for the error reporting.<br>
+ * A context is used for exactly one parsing and is never shared among threads.
+ * The cache uses the LRU policy (Least Recently Used) for node replacing.<br>
+ * The input is parsed without collecting the expected terminals at first. Only if the parsing fails, the input is parsed again
+ * in diagnostic mode by a new context, collecting the expected terminals to build the exception.<br>
+ * The nodes of the syntax tree are created through a {@link TreeBuilder}, which defines their representation.
+ *
+ * @param <N> the type of the node handles of the tree builder
+ *
+ * @author Salvatore Giamp
+ *
+ */
+final class ParseContext<N> {
+
+	private static final boolean DEBUG_PRINT = false;
+
+	//cache of the parsed nodes, indexed by rule head and start position - LRU policy (Least Recently Used)
+	//the keys are kept unboxed in an open addressing table, and the entries are linked in order of access
+	private static final class LruCache<N> {
+		private final int cacheSize;
+		private int size;
+
+		//entries
+		private long[] keys;
+		private Object[] values;
+		private int[] previous;
+		private int[] next;
+		private int eldest = -1, latest = -1;
+
+		//the numbers of the entries plus one, or 0 for the free slots
+		private int[] table;
+
+		LruCache(int cacheSize) {
+			this.cacheSize = cacheSize;
+			allocate(Math.max(1, Math.min(cacheSize, 16)));
+		}
+
+		private void allocate(int capacity) {
+			keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+			values = values == null ? new Object[capacity] : Arrays.copyOf(values, capacity);
+			previous = previous == null ? new int[capacity] : Arrays.copyOf(previous, capacity);
+			next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+			table = new int[Integer.highestOneBit(Math.min(capacity, 1 << 29)) << 2];
+			for(int entry=0; entry<size; entry++)
+				table[slot(keys[entry])] = entry+1;
+		}
+
+		private int hash(long key) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & (table.length-1);
+		}
+
+		//the slot of a key, or the free slot where it would be added
+		private int slot(long key) {
+			int mask = table.length-1;
+			for(int slot = hash(key); ; slot = (slot+1) & mask) {
+				int entry = table[slot]-1;
+				if(entry < 0 || keys[entry] == key)
+					return slot;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		N get(long key) {
+			int entry = table[slot(key)]-1;
+			if(entry < 0)
+				return null;
+			unlink(entry);
+			link(entry);
+			return (N) values[entry];
+		}
+
+		void put(long key, N value) {
+			if(cacheSize <= 0)
+				return;
+			int slot = slot(key);
+			int entry = table[slot]-1;
+			if(entry >= 0)
+				unlink(entry);
+			else {
+				if(size == cacheSize) {
+					//the eldest entry is replaced
+					entry = eldest;
+					unlink(entry);
+					remove(slot(keys[entry]));
+				}
+				else {
+					if(size == keys.length)
+						allocate((int) Math.min(cacheSize, 2L*size));
+					entry = size++;
+				}
+				keys[entry] = key;
+				table[slot(key)] = entry+1;
+			}
+			values[entry] = value;
+			link(entry);
+		}
+
+		//frees a slot, moving back the following keys that would not be found anymore
+		private void remove(int slot) {
+			int mask = table.length-1;
+			int free = slot;
+			for(int i = (slot+1) & mask; table[i] != 0; i = (i+1) & mask) {
+				int home = hash(keys[table[i]-1]);
+				if(((i - home) & mask) >= ((i - free) & mask)) {
+					table[free] = table[i];
+					free = i;
+				}
+			}
+			table[free] = 0;
+		}
+
+		private void link(int entry) {
+			previous[entry] = latest;
+			next[entry] = -1;
+			if(latest >= 0)
+				next[latest] = entry;
+			else
+				eldest = entry;
+			latest = entry;
+		}
+
+		private void unlink(int entry) {
+			if(previous[entry] >= 0)
+				next[previous[entry]] = next[entry];
+			else
+				eldest = next[entry];
+			if(next[entry] >= 0)
+				previous[next[entry]] = previous[entry];
+			else
+				latest = previous[entry];
+		}
+
+		void clear() {
+			Arrays.fill(values, 0, size, null);
+			Arrays.fill(table, 0);
+			size = 0;
+			eldest = latest = -1;
+		}
+	}
+
+	private final Grammar grammar;
+	private final Lexer lexer;
+	private final TreeBuilder<N> builder;
+	private final LruCache<N> cache;
+	private ReusableSubtrees reusable;
+
+	//true when the expected terminals are collected
+	private boolean diagnostic;
+
+	/**
+	 * When the parsing is unsuccessful, this set contains all the expected terminal tokens
+	 */
+	private final Set<ExpectedTerminal> expected = new HashSet<>();
+
+	private CharSequence unexpectedToken;
+
+	private int unexpectedPosition;
+
+	private boolean unexpectedEOF;
+
+	//the position of the last character examined by the lexer for the node being parsed
+	private int lookahead;
+
+	/**
+	 * Creates a context for a parsing.
+	 * @param grammar the grammar to parse
+	 * @param builder the builder of the syntax tree, whose lexer is positioned on the input to parse
+	 * @param cacheSize the max number of cached nodes
+	 * @param reusable the subtrees of a previous parsing that can be reused, or null
+	 */
+	private ParseContext(Grammar grammar, TreeBuilder<N> builder, int cacheSize, ReusableSubtrees reusable) {
+		this.grammar = grammar;
+		this.lexer = builder.input.lexer;
+		this.builder = builder;
+		this.cache = new LruCache<>(cacheSize);
+		this.reusable = reusable;
+	}
+
+	/**
+	 * Parses the input of the lexer of a tree builder, starting from the axiom of the grammar.
+	 * @param grammar the grammar to parse
+	 * @param builder the builder of the syntax tree, whose lexer is positioned on the input to parse
+	 * @param cacheSize the max number of cached nodes
+	 * @param reusable the subtrees of a previous parsing that can be reused, or null
+	 * @return the syntax tree of the input
+	 * @throws UnexpectedSymbolException if an unexpected symbol was found
+	 */
+	static <N> SyntaxTree parse(Grammar grammar, TreeBuilder<N> builder, int cacheSize, ReusableSubtrees reusable) throws UnexpectedSymbolException {
+		return builder.tree(new ParseContext<>(grammar, builder, cacheSize, reusable).parse());
+	}
+
+	/**
+	 * Parses the input of the lexer of a tree builder, starting from the axiom of the grammar, without building the syntax tree.
+	 * @param grammar the grammar to parse
+	 * @param builder the builder of the nodes, whose lexer is positioned on the input to parse
+	 * @param cacheSize the max number of cached nodes
+	 * @return the handle of the root, or null if the axiom has no rule
+	 * @throws UnexpectedSymbolException if an unexpected symbol was found
+	 */
+	static <N> N parseRoot(Grammar grammar, TreeBuilder<N> builder, int cacheSize) throws UnexpectedSymbolException {
+		return new ParseContext<>(grammar, builder, cacheSize, null).parse();
+	}
+
+	private static long cacheKey(int head, int startPosition) {
+		return ((long) head << 32) | (startPosition & 0xFFFFFFFFL);
+	}
+
+	private N parse() throws UnexpectedSymbolException {
+		lexer.setStart(0);
+		unexpectedEOF = false;
+		lookahead = -1;
+
+		int axiom = grammar.headId(grammar.getAxiom());
+		N root = axiom < 0 ? null : parse(axiom);
+
+		cache.clear();
+
+		if(!lexer.next() && !unexpectedEOF) {
+			return root;
+		}
+
+		if(!diagnostic) {
+			//the reused subtrees would hide the expected terminals inside them,
+			//and the diagnostic builder does not build or reduce the nodes again
+			lexer.setInput(lexer.input());
+			ParseContext<?> diagnosis = new ParseContext<>(grammar, builder.diagnostic(), cache.cacheSize, null);
+			diagnosis.diagnostic = true;
+			diagnosis.parse();
+
+			//the input is valid, but a reused subtree was not
+			reusable = null;
+			lexer.setInput(lexer.input());
+			return parse();
+		}
+
+		throw new UnexpectedSymbolException(expected, unexpectedToken, unexpectedPosition, builder.input.source, builder.input.lineIndex());
+	}
+
+	private N parse(int head) {
+		int lexerStart = lexer.start(), lexerPos = lexerStart;
+		int outerLookahead = lookahead;
+
+		long cacheKey = cacheKey(head, lexerStart);
+		N cached = cache.get(cacheKey);
+		if(cached != null) {
+			if(DEBUG_PRINT) System.out.println(" << cache hit! >>");
+			lookahead = Math.max(outerLookahead, builder.lookahead(cached));
+			return cached;
+		}
+
+		if(reusable != null) {
+			N reused = reusable.get(grammar.heads[head], lexerStart, builder);
+			if(reused != null) {
+				if(DEBUG_PRINT) System.out.println(" << subtree reused! >>");
+				cache.put(cacheKey, reused);
+				lookahead = Math.max(outerLookahead, builder.lookahead(reused));
+				unexpectedEOF = false;
+				return reused;
+			}
+		}
+
+		int mark = builder.mark();
+		lookahead = lexerStart-1;
+
+		boolean accept = false;
+		Production accepted = null;
+
+		for(Production production : grammar.productions[head]) {
+			accept = true;
+			accepted = production;
+
+			for(int i=0; i<production.length(); i++) {
+				lexer.setStart(lexerPos);
+
+				boolean found = lexer.next();
+				lookahead = Math.max(lookahead, lexer.lookahead());
+
+				if(production.terminal[i]) { //terminal
+					String type = production.symbols[i];
+					if(found) {
+						CharSequence token = lexer.token(type);
+						if(token != null) {
+							if(diagnostic && unexpectedPosition < lexer.end())
+								expected.clear();
+
+							builder.terminal(type, lexer.start(), lexer.end(), lexer.similarTypes());
+
+							lexerPos = lexer.end()+1;
+							if(DEBUG_PRINT) System.out.println("accept terminal: " + type + " (\"" + token + "\")");
+
+							continue;
+						}
+					}
+					else {
+						unexpectedEOF = true;
+					}
+
+					if(diagnostic) {
+						if(unexpectedPosition < lexer.start())
+							expected.clear();
+
+						if(expected.isEmpty() || unexpectedPosition == lexer.start()){
+							if(expected.isEmpty()) {
+								unexpectedPosition = lexer.start();
+								unexpectedToken = lexer.token();
+							}
+							expected.add(new ExpectedTerminal(unexpectedPosition, type, lexer.description(type)));
+						}
+					}
+
+					if(DEBUG_PRINT) System.out.println("error terminal: " + type + ", read=" + lexer.token());
+					accept = false;
+				}
+				else {	//non-terminal
+					String product = production.symbols[i];
+
+					if(DEBUG_PRINT) System.out.println("entering non-terminal: " + product);
+					N son = production.heads[i] < 0 ? null : parse(production.heads[i]);
+					if(son != null) {
+						if(DEBUG_PRINT) System.out.println("accept non-terminal: " + product);
+						lexerPos = builder.end(son)+1;
+						builder.child(son);
+					}
+					else {
+						if(DEBUG_PRINT) System.out.println("error non-terminal: " + product);
+						accept = false;
+					}
+
+				}
+
+				if(!accept)
+					break;
+
+			}
+
+			if(accept) {
+				unexpectedEOF = false;
+				break;
+			}
+			else {
+				builder.reset(mark);
+				lexerPos = lexerStart;
+				if(DEBUG_PRINT) System.out.println("pos=" + lexerPos);
+			}
+		}
+
+		int nodeLookahead = lookahead;
+		lookahead = Math.max(outerLookahead, lookahead);
+
+		if(!accept) {
+			return null;
+		}
+
+		lexer.setStart(lexerPos);
+		N node = builder.node(mark, grammar.heads[head], lexerStart, lexerPos-1, nodeLookahead, accepted.id);
+
+		cache.put(cacheKey, node);
+
+		return node;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.io.Serializable;
+
+import jointyc.analysis.lexer.Lexer;
+import jointyc.charsequence.LineIndex;
+
+/**
+ * Holds the input of a parsing, shared by all the nodes of the produced syntax tree:
+ * the source string, the lexer and the grammar used for the parsing, the line index of the source and the table of the interned tokens,
+ * both created at the first request, and the index of the produced tree. The input of a frozen tree has no lexer (see {@link SyntaxTree#freeze()}).
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class ParsedInput implements Serializable {
+	private static final long serialVersionUID = -3391838021447614270L;
+
+	final CharSequence source;
+	final Lexer lexer;
+	final transient Grammar grammar;
+	private transient volatile LineIndex lineIndex;
+	private transient volatile TokenInterner interner;
+	//the root of a tree made of linked nodes
+	transient volatile SyntaxTree root;
+	private transient volatile SyntaxIndex index;
+
+	ParsedInput(Lexer lexer, Grammar grammar) {
+		this(lexer.input(), lexer, grammar);
+	}
+	
+	ParsedInput(CharSequence source, Lexer lexer, Grammar grammar) {
+		this.source = source;
+		this.lexer = lexer;
+		this.grammar = grammar;
+	}
+
+	LineIndex lineIndex() {
+		LineIndex lineIndex = this.lineIndex;
+		if(lineIndex == null) {
+			synchronized (this) {
+				lineIndex = this.lineIndex;
+				if(lineIndex == null)
+					this.lineIndex = lineIndex = new LineIndex(source);
+			}
+		}
+		return lineIndex;
+	}
+	
+	TokenInterner interner() {
+		TokenInterner interner = this.interner;
+		if(interner == null) {
+			synchronized (this) {
+				interner = this.interner;
+				if(interner == null)
+					this.interner = interner = new TokenInterner();
+			}
+		}
+		return interner;
+	}
+	
+	/**
+	 * Gets the index of the root of the produced tree
+	 * @param root the root of the tree
+	 * @return the index of the tree
+	 */
+	SyntaxIndex index(SyntaxTree root) {
+		SyntaxIndex index = this.index;
+		if(index == null) {
+			synchronized (this) {
+				index = this.index;
+				if(index == null)
+					this.index = index = new SyntaxIndex(root);
+			}
+		}
+		return index;
+	}
+}
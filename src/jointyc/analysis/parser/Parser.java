@@ -48,6 +48,52 @@ public interface Parser {
 	 */
 	SyntaxTree parse() throws UnexpectedSymbolException;
 	
+	/**
+	 * Parses the specified input.<br>
+	 * Implementations that keep the parsing state apart from the grammar (such as {@link StandardParser})
+	 * allow concurrent invocations of this method. The default implementation sets the input of the lexer
+	 * of this parser and calls {@link #parse()}, serializing the invocations on this parser.
+	 * @param input the string to parse
+	 * @return a {@link SyntaxTree} if the parsing was successful
+	 * @throws UnexpectedSymbolException if an unexpected symbol was found.
+	 */
+	default SyntaxTree parse(CharSequence input) throws UnexpectedSymbolException {
+		synchronized (this) {
+			getLexer().setInput(input);
+			return parse();
+		}
+	}
+	
+	/**
+	 * Parses an edited input incrementally. The subtrees of the previous syntax tree that are not affected
+	 * by the edit are reused, and only the structures around the edit are parsed again.<br>
+	 * The previous tree must be produced by this parser, with the same rules, for the source the edit was applied to.
+	 * The default implementation parses the whole input through {@link #parse(CharSequence)}.
+	 * @param input the edited string to parse
+	 * @param previous the syntax tree of the string before the edit
+	 * @param edit the edit that produced the input from the previous string
+	 * @return a {@link SyntaxTree} if the parsing was successful
+	 * @throws UnexpectedSymbolException if an unexpected symbol was found.
+	 */
+	default SyntaxTree parse(CharSequence input, SyntaxTree previous, TextEdit edit) throws UnexpectedSymbolException {
+		return parse(input);
+	}
+	
+	/**
+	 * Parses the specified input, reducing the nodes of its syntax tree to values (see {@link SyntaxReducer}).<br>
+	 * Implementations (such as {@link StandardParser}) may reduce the nodes while they are parsed, without building the tree,
+	 * so that the nodes of discarded productions may be reduced too. The default implementation reduces the tree
+	 * returned by {@link #parse(CharSequence)}.
+	 * @param input the string to parse
+	 * @param reducer the reducer of the nodes
+	 * @return the value of the root, or null if the parsing produced no tree
+	 * @throws UnexpectedSymbolException if an unexpected symbol was found.
+	 */
+	default <R> R parse(CharSequence input, SyntaxReducer<R> reducer) throws UnexpectedSymbolException {
+		SyntaxTree tree = parse(input);
+		return tree == null ? null : SyntaxReducer.reduce(tree, reducer);
+	}
+	
 	/**
 	 * Gets the productions associated to the specified rule head.
 	 * The returned production lists adhere to the logic of {@link EditableParser#addRule(String, String...)}, to distinguish terminal tokens from non-terminal ones.
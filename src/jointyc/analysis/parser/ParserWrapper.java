@@ -60,6 +60,21 @@ public class ParserWrapper implements Parser {
 		return parser.parse();
 	}
 
+	@Override
+	public SyntaxTree parse(CharSequence input) throws UnexpectedSymbolException {
+		return parser.parse(input);
+	}
+
+	@Override
+	public SyntaxTree parse(CharSequence input, SyntaxTree previous, TextEdit edit) throws UnexpectedSymbolException {
+		return parser.parse(input, previous, edit);
+	}
+
+	@Override
+	public <R> R parse(CharSequence input, SyntaxReducer<R> reducer) throws UnexpectedSymbolException {
+		return parser.parse(input, reducer);
+	}
+
 	@Override
 	public List<List<String>> getRule(String head) {
 		return parser.getRule(head);
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reduces the nodes of a syntax tree through a {@link SyntaxReducer} while they are parsed, instead of building the tree.<br>
+ * The handles of the nodes hold only their values, so that the children of a node are released as soon as the node is reduced,
+ * and the memory used by the parsing is bounded by the nodes being parsed and by the cache of the parser.
+ * 
+ * @param <R> the type of the reduced values
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class ReducingBuilder<R> extends TreeBuilder<ReducingBuilder.Reduction<R>> {
+
+	//the handle of a reduced node
+	static final class Reduction<R> {
+		final R value;
+		final int end;
+		final int lookahead;
+
+		Reduction(R value, int end, int lookahead) {
+			this.value = value;
+			this.end = end;
+			this.lookahead = lookahead;
+		}
+	}
+
+	//the reducer of the diagnostic parsing
+	private static final SyntaxReducer<Object> DISCARD = new SyntaxReducer<Object>() {
+		@Override
+		public Object terminal(SyntaxTree token) {
+			return null;
+		}
+
+		@Override
+		public Object nonTerminal(SyntaxTree node, List<Object> children) {
+			return null;
+		}
+	};
+
+	private final SyntaxReducer<R> reducer;
+	private final ArrayList<Reduction<R>> stack = new ArrayList<>();
+
+	ReducingBuilder(ParsedInput input, SyntaxReducer<R> reducer) {
+		super(input);
+		this.reducer = reducer;
+	}
+
+	@Override
+	int mark() {
+		return stack.size();
+	}
+
+	@Override
+	void reset(int mark) {
+		stack.subList(mark, stack.size()).clear();
+	}
+
+	@Override
+	void terminal(String type, int start, int end, Set<String> similarTypes) {
+		SyntaxNode node = new SyntaxNode(input);
+		node.terminal = true;
+		node.type = type;
+		node.start = start;
+		node.end = end;
+		node.similarTypes = similarTypes;
+		stack.add(new Reduction<>(reducer.terminal(node), end, end));
+	}
+
+	@Override
+	void child(Reduction<R> node) {
+		stack.add(node);
+	}
+
+	@Override
+	Reduction<R> node(int mark, String type, int start, int end, int lookahead, int production) {
+		SyntaxNode node = new SyntaxNode(input);
+		node.type = type;
+		node.start = start;
+		node.end = end;
+		node.lookahead = lookahead;
+		node.production = production;
+
+		List<Reduction<R>> children = stack.subList(mark, stack.size());
+		List<R> values = new ArrayList<>(children.size());
+		for(Reduction<R> child : children)
+			values.add(child.value);
+		children.clear();
+
+		return new Reduction<>(reducer.nonTerminal(node, values), end, lookahead);
+	}
+
+	@Override
+	int end(Reduction<R> node) {
+		return node.end;
+	}
+
+	@Override
+	int lookahead(Reduction<R> node) {
+		return node.lookahead;
+	}
+
+	//the nodes of the diagnostic parsing are discarded, so that the reducer does not see them twice
+	@Override
+	TreeBuilder<?> diagnostic() {
+		return new ReducingBuilder<>(input, DISCARD);
+	}
+
+	@Override
+	SyntaxTree tree(Reduction<R> root) {
+		throw new UnsupportedOperationException("the reduced trees are not built");
+	}
+
+	/**
+	 * Gets the value of the root
+	 * @param root the handle of the root, or null
+	 * @return the value of the root, or null if the root is null
+	 */
+	R value(Reduction<R> root) {
+		return root == null ? null : root.value;
+	}
+}
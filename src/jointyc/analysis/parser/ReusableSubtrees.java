@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jointyc.analysis.lexer.Lexer;
+
+/**
+ * Holds the subtrees of a previous syntax tree that are not affected by an edit of its source,
+ * so that the parsing of the edited source can reuse them instead of parsing them again.<br>
+ * <br>
+ * A subtree is not affected when the edit does not change the characters its parsing depended on, that is, the characters
+ * from the one preceding its start to its lookahead (see {@link Lexer#lookahead()}).
+ * Only the largest unaffected subtrees are indexed, by their position in the edited source. The smaller subtrees
+ * are found descending from them, and all the reused nodes are copied to the new tree, with their positions shifted by the edit.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class ReusableSubtrees {
+	private final TextEdit edit;
+	private final Map<Integer, List<SyntaxNode>> subtrees = new HashMap<>();
+
+	/**
+	 * Collects the reusable subtrees of a previous syntax tree.
+	 * @param previous the root of the previous syntax tree
+	 * @param edit the edit of the previous source
+	 */
+	ReusableSubtrees(SyntaxNode previous, TextEdit edit) {
+		this.edit = edit;
+		collect(previous);
+	}
+
+	private void collect(SyntaxNode node) {
+		if(node.terminal)
+			return;
+
+		if(edit.changes(node.start-1, node.lookahead)) {
+			for(SyntaxNode next : node.nexts)
+				collect(next);
+			return;
+		}
+
+		subtrees.computeIfAbsent(shift(node, node.start), k -> new ArrayList<>()).add(node);
+	}
+
+	//the nodes before the edit keep their positions, the ones after the edit are moved
+	private int shift(SyntaxNode node, int position) {
+		return node.lookahead < edit.position() ? position : position + edit.delta();
+	}
+
+	/**
+	 * Gets a reusable subtree.
+	 * @param type the type of the subtree
+	 * @param start the start position of the subtree in the edited source
+	 * @param builder the builder of the edited syntax tree
+	 * @return the handle of a copy of the subtree, or null if no reusable subtree exists
+	 */
+	<N> N get(String type, int start, TreeBuilder<N> builder) {
+		List<SyntaxNode> roots = subtrees.get(start);
+		if(roots == null)
+			return null;
+
+		for(SyntaxNode root : roots) {
+			//the first children start at the same position of their parent
+			for(SyntaxNode node = root; node != null && !node.terminal && node.start == root.start; node = node.nexts.peekFirst()) {
+				if(node.type.equals(type))
+					return copy(node, shift(root, 0), builder);
+			}
+		}
+		return null;
+	}
+
+	private <N> N copy(SyntaxNode node, int delta, TreeBuilder<N> builder) {
+		int mark = builder.mark();
+		for(SyntaxNode next : node.nexts) {
+			if(next.terminal)
+				builder.terminal(next.type, next.start + delta, next.end + delta, next.similarTypes);
+			else
+				builder.child(copy(next, delta, builder));
+		}
+		return builder.node(mark, node.type, node.start + delta, node.end + delta, node.lookahead + delta, node.production);
+	}
+}
@@ -22,33 +22,35 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
 import jointyc.analysis.lexer.Lexer;
 import jointyc.analysis.parser.exception.InfiniteRecursionException;
 import jointyc.analysis.parser.exception.InvalidRuleNameException;
 import jointyc.analysis.parser.exception.UnexpectedSymbolException;
-import jointyc.analysis.parser.exception.UnexpectedSymbolException.ExpectedTerminal;
 
 /**
  * Defines a standard implementation for an editable parser.
  * This parser uses a cache to avoid revisiting of syntax structures.
- * The cache uses the LRU policy (Least Recently Used) for node replacing.
+ * The cache uses the LRU policy (Least Recently Used) for node replacing.<br>
+ * <br>
+ * The rules are parsed through an immutable {@link Grammar} snapshot, while the parsing state is kept
+ * apart, in a context created for each parsing. Then, the {@link #parse(CharSequence)} method can be
+ * invoked concurrently by any number of threads, as long as the rules are not edited meanwhile.<br>
+ * <br>
+ * The produced syntax trees are made of linked nodes, by default. When the compact trees are enabled (see {@link #setCompactTrees(boolean)}),
+ * the nodes are stored in parallel arrays of integers, one arena for each parsing, taking a few integers for each node.
  * 
  * @author Salvatore Giamp
  *
  */
 public class StandardParser implements EditableParser {
-
-	private static final boolean DEBUG_PRINT = false;
 	
 	//internal representation of rule
 	private static class Rule implements Iterable<String>{
@@ -121,81 +123,21 @@ public class StandardParser implements EditableParser {
 		
 	}
 	
-	//entry for a cached node
-	private static class CacheKey{
-		
-		//uses flyweight pattern to bound the explosiveness of memory
-		private static Map<String, Map<Integer, CacheKey>> flyweight = new TreeMap<>();
-		
-		public static CacheKey get(String head, int startPosition) {
-			Integer pos = Integer.valueOf(startPosition);
-			Map<Integer, CacheKey> posMap = null;
-			if(flyweight.containsKey(head)) {
-				posMap = flyweight.get(head);
-				if(posMap.containsKey(pos))
-					return posMap.get(pos);
-			}
-			
-			if(posMap == null) {
-				//uses a HashMap for the second level
-				posMap = new HashMap<>();
-				flyweight.put(head, posMap);
-			}
-			
-			CacheKey cacheEntry = new CacheKey(head, startPosition);
-			posMap.put(pos, cacheEntry);
-			
-			return cacheEntry;
-		}
-		
-		public final String product;
-		public final int startPosition;
-		
-		private CacheKey(String product, int startPosition) {
-			this.product = product;
-			this.startPosition = startPosition;
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((product == null) ? 0 : product.hashCode());
-			result = prime * result + startPosition;
-			return result;
-		}
-
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			CacheKey other = (CacheKey) obj;
-			if (product == null) {
-				if (other.product != null)
-					return false;
-			} else if (!product.equals(other.product))
-				return false;
-			if (startPosition != other.startPosition)
-				return false;
-			return true;
-		}
-		
-	}
-	
-	//cache init - LRU policy (Least Recently Used) 
-	private Map<CacheKey, SyntaxNode> cache = new HashMap<>();
-	private LinkedHashSet<CacheKey> lruBuffer = new LinkedHashSet<>();
-	
 	/**
 	 * The max cache size
 	 */
 	private int cacheSize;
 	
+	/**
+	 * True if the parsings produce compact syntax trees
+	 */
+	private volatile boolean compactTrees;
+	
+	/**
+	 * True if the parsings build the index of the syntax trees
+	 */
+	private volatile boolean indexedTrees;
+	
 	/**
 	 * The lexer used by the parser
 	 */
@@ -212,15 +154,9 @@ public class StandardParser implements EditableParser {
 	private Map<String, ArrayList<Rule>> rules = new LinkedHashMap<>();
 	
 	/**
-	 * When the parsing is unsuccessful, this set contains all the expected terminal tokens
+	 * The snapshot of the current rules, or null if the rules changed after the last snapshot
 	 */
-	private Set<ExpectedTerminal> expected;
-	
-	private CharSequence unexpectedToken;
-	
-	private int unexpectedPosition;
-	
-	private boolean unexpectedEOF;
+	private volatile Grammar grammar;
 	
 	/**
 	 * Store the detected direct recursions (without forwarding the lexer).
@@ -290,6 +226,7 @@ public class StandardParser implements EditableParser {
 		
 		if(!current.contains(rule)) {
 			current.add(rule);
+			grammar = null;
 		}
 
 		if(axiom == null) axiom = head;
@@ -320,150 +257,157 @@ public class StandardParser implements EditableParser {
 		this.axiom = axiom;
 	}
 	
-	public SyntaxTree parse() throws UnexpectedSymbolException {
-		expected = new HashSet<>();
-		lexer.setStart(0);
-		unexpectedEOF = false;
-		
-		SyntaxTree root = parse(axiom);
-		
-		cache.clear();
-		lruBuffer.clear();
-		
-		if(!lexer.next() && !unexpectedEOF) {
-			return root;
-		}
-		
-		throw new UnexpectedSymbolException(expected, unexpectedToken, unexpectedPosition, lexer.input());
+	/**
+	 * Sets the representation of the syntax trees produced by the next parsings.
+	 * The compact trees store their nodes in parallel arrays of integers, and create the {@link SyntaxTree} objects
+	 * on demand, as lightweight cursors over the arrays, when the tree is explored.<br>
+	 * The incremental parsings (see {@link #parse(CharSequence, SyntaxTree, TextEdit)}) always produce linked nodes, because
+	 * they can be reused by the next incremental parsing.
+	 * @param compactTrees true to produce compact syntax trees, false to produce linked nodes
+	 */
+	public void setCompactTrees(boolean compactTrees){
+		this.compactTrees = compactTrees;
 	}
 	
-	private SyntaxNode parse(String ruleHead) {
-		CacheKey cacheKey = CacheKey.get(ruleHead, lexer.start());
-		if(cache.containsKey(cacheKey)) {
-			if(DEBUG_PRINT) System.out.println(" << cache hit! >>");
-			
-			lruBuffer.remove(cacheKey);
-			lruBuffer.add(cacheKey);
-			return cache.get(cacheKey);
+	/**
+	 * Tells if this parser produces compact syntax trees
+	 * @return true if the produced syntax trees are compact
+	 * @see #setCompactTrees(boolean)
+	 */
+	public boolean isCompactTrees(){
+		return compactTrees;
+	}
+	
+	/**
+	 * Sets whether the next parsings build the index of the produced syntax trees by type (see {@link SyntaxTree#index()}),
+	 * so that the index is ready when the tree is analyzed. Otherwise, the index is built at the first request.
+	 * @param indexedTrees true to build the index of the syntax trees during the parsing
+	 */
+	public void setIndexedTrees(boolean indexedTrees){
+		this.indexedTrees = indexedTrees;
+	}
+	
+	/**
+	 * Tells if this parser builds the index of the produced syntax trees
+	 * @return true if the produced syntax trees are indexed during the parsing
+	 * @see #setIndexedTrees(boolean)
+	 */
+	public boolean isIndexedTrees(){
+		return indexedTrees;
+	}
+	
+	//builds the index of a parsed tree, if the indexed trees are enabled
+	private SyntaxTree indexed(SyntaxTree tree){
+		if(indexedTrees && tree != null)
+			tree.index();
+		return tree;
+	}
+	
+	//creates the tree builder for a parsing of the input of the specified lexer
+	private TreeBuilder<?> builder(Lexer lexer, Grammar grammar){
+		ParsedInput input = new ParsedInput(lexer, grammar);
+		return compactTrees ? new ArenaBuilder(input) : new NodeBuilder(input);
+	}
+	
+	/**
+	 * Gets an immutable snapshot of the current rules of this parser.
+	 * The snapshot is created again only when the rules or the axiom change.
+	 * @return the current grammar
+	 */
+	public Grammar getGrammar(){
+		Grammar grammar = this.grammar;
+		if(grammar == null || !Objects.equals(grammar.getAxiom(), axiom)) {
+			Map<String, List<List<String>>> productions = new LinkedHashMap<>();
+			for(Map.Entry<String, ArrayList<Rule>> e : rules.entrySet()) {
+				List<List<String>> alternatives = new ArrayList<>();
+				for(Rule rule : e.getValue())
+					alternatives.add(rule.production);
+				productions.put(e.getKey(), alternatives);
+			}
+			grammar = new Grammar(productions, axiom);
+			this.grammar = grammar;
 		}
-		
-		ArrayList<Rule> rules = this.rules.get(ruleHead);
-		if(rules == null)
-			return null;
-		int lexerStart = lexer.start(), lexerPos = lexerStart;
-		
-		SyntaxNode node = new SyntaxNode(lexer);
-		
-		boolean accept = false;
-		
-		for(Rule rule : rules) {
-			accept = true;
+		return grammar;
+	}
+	
+	public SyntaxTree parse() throws UnexpectedSymbolException {
+		Grammar grammar = getGrammar();
+		return indexed(ParseContext.parse(grammar, builder(lexer, grammar), cacheSize, null));
+	}
 			
-			for(String product : rule) {
-				lexer.setStart(lexerPos);
-				
-				lexer.next();
-				
-				if(product.startsWith(TERMINAL_PREFIX)) { //terminal
-					String type = product.substring(1);
-					if(lexer.next()) {
-						CharSequence token = lexer.token(type);
-						if(token != null) {
-							if(unexpectedPosition < lexer.end())
-								expected.clear();
-							
-							SyntaxNode son = new SyntaxNode(lexer);
-							
-							son.terminal = true;
-							son.type = type;
-							son.start = lexer.start();
-							son.end = lexer.end();
-							son.similarTypes = lexer.similarTypes();
-							
-							node.nexts.addLast(son);
-							
-							lexerPos = son.end()+1;
-							if(DEBUG_PRINT) System.out.println("accept terminal: " + type + " (\"" + token + "\")");
-							
-							continue;
-						}
-					}
-					else {
-						unexpectedEOF = true;
-					}
-					
-					if(unexpectedPosition < lexer.start())
-						expected.clear();
-					
-					if(expected.isEmpty() || unexpectedPosition == lexer.start()){
-						if(expected.isEmpty()) {
-							unexpectedPosition = lexer.start();
-							unexpectedToken = lexer.token();
-						}
-						expected.add(new ExpectedTerminal(unexpectedPosition, type, lexer.description(type)));
-					}
-					
-					if(DEBUG_PRINT) System.out.println("error terminal: " + type + ", read=" + lexer.token());
-					accept = false;
-				}
-				else {	//non-terminal
+	/**
+	 * Parses the specified input through a new lexer forked by the lexer of this parser (see {@link Lexer#fork()}).
+	 * This method does not change the state of this parser, and can be invoked concurrently by different threads.
+	 * If the lexer cannot be forked (see {@link Lexer#canFork()}), the input is set to the lexer of this parser, and the invocations are serialized.
+	 */
+	@Override
+	public SyntaxTree parse(CharSequence input) throws UnexpectedSymbolException {
+		if(!lexer.canFork())
+			return EditableParser.super.parse(input);
+		
+		Lexer lexer = this.lexer.fork();
+		lexer.setInput(input);
+		Grammar grammar = getGrammar();
+		return indexed(ParseContext.parse(grammar, builder(lexer, grammar), cacheSize, null));
+	}
 
-					if(DEBUG_PRINT) System.out.println("entering non-terminal: " + product);
-					SyntaxNode son = parse(product);
-					if(son != null) {
-						if(DEBUG_PRINT) System.out.println("accept non-terminal: " + product);
-						lexerPos = son.end+1;
-						node.nexts.addLast(son);
-					}
-					else {
-						if(DEBUG_PRINT) System.out.println("error non-terminal: " + product);
-						accept = false;
-					}
-					
-				}
-				
-				if(!accept)
-					break;
-				
-			}
-			
-			if(accept) {
-				unexpectedEOF = false;
-				break;
-			}
-			else {
-				node.nexts.clear();
-				lexerPos = lexerStart;
-				if(DEBUG_PRINT) System.out.println("pos=" + lexerPos);
+	/**
+	 * Parses the specified input through a new lexer forked by the lexer of this parser, reducing the nodes as soon as their rules are recognized.
+	 * The syntax tree is never built: the children of a node are released once the node is reduced, so that the memory used by the parsing
+	 * does not grow with the size of the tree. The nodes of the productions discarded by the parser are reduced too.<br>
+	 * This method does not change the state of this parser, and can be invoked concurrently by different threads,
+	 * unless the lexer cannot be forked, as for {@link #parse(CharSequence)}.
+	 */
+	@Override
+	public <R> R parse(CharSequence input, SyntaxReducer<R> reducer) throws UnexpectedSymbolException {
+		if(!lexer.canFork()) {
+			synchronized (this) {
+				lexer.setInput(input);
+				return reduce(lexer, reducer);
 			}
 		}
 		
-		if(!accept) {
-			return null;
-		}
-		
-		lexer.setStart(lexerPos);
-		node.type = ruleHead;
-		node.start = lexerStart;
-		node.end = lexerPos-1;
-		
-		if(lexerPos >= lexerStart) {
-			//LRU removing
-			if(lruBuffer.size() >= cacheSize) {
-				cacheKey = lruBuffer.iterator().next();
-				lruBuffer.remove(cacheKey);
-				cache.remove(cacheKey);
+		Lexer lexer = this.lexer.fork();
+		lexer.setInput(input);
+		return reduce(lexer, reducer);
+	}
+	
+	//parses the input of a lexer, reducing the nodes
+	private <R> R reduce(Lexer lexer, SyntaxReducer<R> reducer) throws UnexpectedSymbolException {
+		Grammar grammar = getGrammar();
+		ReducingBuilder<R> builder = new ReducingBuilder<>(new ParsedInput(lexer, grammar), reducer);
+		return builder.value(ParseContext.parseRoot(grammar, builder, cacheSize));
+	}
+
+	/**
+	 * Parses the edited input incrementally, through a new lexer forked by the lexer of this parser.
+	 * The unaffected subtrees of the previous tree are copied, with their positions shifted by the edit, instead of being parsed again,
+	 * so that the cost of the parsing depends mostly on the size of the edit.<br>
+	 * If the edited input is not valid, it is parsed again without reusing any subtree, so that the exception reports the same error of {@link #parse(CharSequence)}.
+	 * If the rules changed after the parsing of the previous tree, the input is parsed from scratch.
+	 * @throws IllegalArgumentException if the edit does not fit the previous source and the edited input
+	 */
+	@Override
+	public SyntaxTree parse(CharSequence input, SyntaxTree previous, TextEdit edit) throws UnexpectedSymbolException {
+		Grammar grammar = getGrammar();
+		if(!(previous instanceof SyntaxNode) || previous.grammar() != grammar)
+			return parse(input);
+		
+		int previousLength = previous.source().length();
+		if(edit.position() + edit.removedLength() > previousLength || previousLength + edit.delta() != input.length())
+			throw new IllegalArgumentException("the edit does not fit the sources: " + edit);
+		
+		ReusableSubtrees reusable = new ReusableSubtrees((SyntaxNode) previous, edit);
+		if(!lexer.canFork()) {
+			synchronized (this) {
+				lexer.setInput(input);
+				return indexed(ParseContext.parse(grammar, new NodeBuilder(new ParsedInput(lexer, grammar)), cacheSize, reusable));
 			}
-			
-			//caching
-			cacheKey = CacheKey.get(ruleHead, lexerStart);
-			cache.put(cacheKey, node);
-			
-			//LRU buffering
-			lruBuffer.add(cacheKey);
 		}
 		
-		return node;
+		Lexer lexer = this.lexer.fork();
+		lexer.setInput(input);
+		return indexed(ParseContext.parse(grammar, new NodeBuilder(new ParsedInput(lexer, grammar)), cacheSize, reusable));
 	}
 
 	@Override
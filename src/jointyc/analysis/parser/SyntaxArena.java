@@ -0,0 +1,122 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores the nodes of a syntax tree in parallel integer columns, indexed by node number.<br>
+ * The nodes are numbered in preorder, starting from the root, so that the first child of a node,
+ * if any, follows its parent, and the next siblings are linked through the {@link #next(int)} column.
+ * The types and the sets of similar types are stored once, in tables indexed by the type and similar type numbers of the nodes.
+ * The nodes are exposed as {@link SyntaxTree} objects by lightweight cursors (see {@link CompactSyntaxTree}).<br>
+ * The columns are stored in arrays (see {@link ArraySyntaxArena}) or read from a mapped file (see {@link MappedSyntaxArena}).
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+abstract class SyntaxArena implements Serializable {
+	private static final long serialVersionUID = -6004745432279017375L;
+
+	//flag of the terminal nodes, the other bits of the flags store the number of children
+	static final int TERMINAL = 1;
+
+	final ParsedInput input;
+	final String[] types;
+	final List<Set<String>> similarTypes;
+	final int size;
+
+	SyntaxArena(ParsedInput input, String[] types, List<Set<String>> similarTypes, int size) {
+		this.input = input;
+		this.types = types;
+		this.similarTypes = similarTypes;
+		this.size = size;
+	}
+
+	//the columns of the nodes
+	abstract int typeId(int node);
+	abstract int start(int node);
+	abstract int end(int node);
+	abstract int next(int node);
+	abstract int flags(int node);
+	//the similar types of a terminal node, or the production of a non-terminal one
+	abstract int similarId(int node);
+
+	/**
+	 * Creates an arena that shares the nodes of this one, with a different input
+	 * @param input the new input
+	 * @return the new arena
+	 */
+	abstract SyntaxArena withInput(ParsedInput input);
+
+	boolean terminal(int node) {
+		return (flags(node) & TERMINAL) != 0;
+	}
+
+	int nexts(int node) {
+		return flags(node) >>> 1;
+	}
+
+	int firstChild(int node) {
+		return nexts(node) == 0 ? -1 : node+1;
+	}
+
+	String type(int node) {
+		return types[typeId(node)];
+	}
+
+	Set<String> similarTypes(int node) {
+		int similar = similarId(node);
+		return similar < 0 || !terminal(node) ? Collections.<String>emptySet() : similarTypes.get(similar);
+	}
+
+	int production(int node) {
+		return terminal(node) ? -1 : similarId(node);
+	}
+
+	CompactSyntaxTree cursor(int node) {
+		return new CompactSyntaxTree(this, node);
+	}
+
+	/**
+	 * Gets the children of a node as a list of cursors, created at each access
+	 * @param node the parent node
+	 * @return the list of the children
+	 */
+	List<SyntaxTree> children(int node) {
+		int[] children = new int[nexts(node)];
+		for(int i=0, child=firstChild(node); i<children.length; i++, child=next(child))
+			children[i] = child;
+
+		return new AbstractList<SyntaxTree>() {
+			@Override
+			public SyntaxTree get(int index) {
+				return cursor(children[index]);
+			}
+
+			@Override
+			public int size() {
+				return children.length;
+			}
+		};
+	}
+}
@@ -0,0 +1,281 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes the nodes of a syntax tree by their type, to look up the nodes of a type without exploring the tree.<br>
+ * <br>
+ * The nodes are numbered in preorder, and the index keeps, for each type, the sorted array of the numbers of its nodes.
+ * Then, the nodes of a type are listed in O(k), where k is the number of the listed nodes, and the innermost node
+ * of a type that covers a position is found by a binary search, followed by a walk over the enclosing nodes of the same type.<br>
+ * An index is immutable once built, so it can be shared among threads.
+ * 
+ * @see SyntaxTree#index()
+ * @author Salvatore Giamp
+ *
+ */
+public final class SyntaxIndex {
+
+	private static final int[] NO_NODES = new int[0];
+
+	private final SyntaxTree root;
+
+	//the arena of a compact root, whose nodes are numbered as in the arena, from the root on
+	private final SyntaxArena arena;
+	private final int offset;
+
+	//the nodes of any other root
+	private final SyntaxTree[] nodes;
+
+	//the nearest ancestor of the same type of each node, or -1
+	private final int[] enclosing;
+
+	private final Map<String, int[]> ids;
+
+	/**
+	 * Builds the index of a syntax tree.
+	 * @param root the root of the indexed tree
+	 */
+	public SyntaxIndex(SyntaxTree root) {
+		if(root == null)
+			throw new NullPointerException("null root");
+		this.root = root;
+
+		String[] typeNames;
+		int[] typeIds;
+		if(root instanceof CompactSyntaxTree) {
+			CompactSyntaxTree compact = (CompactSyntaxTree) root;
+			arena = compact.arena;
+			offset = compact.node;
+			nodes = null;
+
+			//the nodes of a subtree follow its root in the arena, up to its last descendant
+			int last = offset;
+			while(arena.nexts(last) > 0) {
+				int child = arena.firstChild(last);
+				for(int i=arena.nexts(last); i>1; i--)
+					child = arena.next(child);
+				last = child;
+			}
+
+			typeNames = arena.types;
+			typeIds = new int[last - offset + 1];
+			enclosing = new int[typeIds.length];
+
+			//open ancestors and the number of their children not visited yet
+			int[] open = new int[16], remaining = new int[16];
+			int depth = 0;
+			int[] innermost = new int[typeNames.length];
+			Arrays.fill(innermost, -1);
+			for(int id=0; id<typeIds.length; id++) {
+				while(depth > 0 && remaining[depth-1] == 0) {
+					int closed = open[--depth];
+					innermost[typeIds[closed]] = enclosing[closed];
+				}
+				if(depth > 0)
+					remaining[depth-1]--;
+
+				int type = typeIds[id] = arena.typeId(offset + id);
+				enclosing[id] = innermost[type];
+				int children = arena.nexts(offset + id);
+				if(children > 0) {
+					if(depth == open.length) {
+						open = Arrays.copyOf(open, depth*2);
+						remaining = Arrays.copyOf(remaining, depth*2);
+					}
+					open[depth] = id;
+					remaining[depth++] = children;
+					innermost[type] = id;
+				}
+			}
+		}
+		else {
+			arena = null;
+			offset = 0;
+
+			List<SyntaxTree> nodes = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+			Map<String, Integer> nameIds = new HashMap<>();
+			int[] ids = new int[16], enclosing = new int[16];
+			List<Integer> innermost = new ArrayList<>();
+
+			//the iterators over the children of the open ancestors, and the numbers of the ancestors
+			Deque<Iterator<SyntaxTree>> iterators = new ArrayDeque<>();
+			int[] open = new int[16];
+			SyntaxTree next = root;
+			while(next != null) {
+				int id = nodes.size();
+				nodes.add(next);
+				Integer type = nameIds.get(next.type());
+				if(type == null) {
+					nameIds.put(next.type(), type = names.size());
+					names.add(next.type());
+					innermost.add(-1);
+				}
+				if(id == ids.length) {
+					ids = Arrays.copyOf(ids, id*2);
+					enclosing = Arrays.copyOf(enclosing, id*2);
+				}
+				ids[id] = type;
+				enclosing[id] = innermost.get(type);
+
+				if(!next.terminal()) {
+					if(iterators.size() == open.length)
+						open = Arrays.copyOf(open, open.length*2);
+					open[iterators.size()] = id;
+					iterators.push(next.iterator());
+					innermost.set(type, id);
+				}
+
+				next = null;
+				while(next == null && !iterators.isEmpty()) {
+					if(iterators.peek().hasNext())
+						next = iterators.peek().next();
+					else {
+						iterators.pop();
+						int closed = open[iterators.size()];
+						innermost.set(ids[closed], enclosing[closed]);
+					}
+				}
+			}
+
+			this.nodes = nodes.toArray(new SyntaxTree[nodes.size()]);
+			this.enclosing = Arrays.copyOf(enclosing, this.nodes.length);
+			typeNames = names.toArray(new String[names.size()]);
+			typeIds = ids;
+		}
+
+		//sorts the nodes by type, keeping the preorder
+		int[] counts = new int[typeNames.length + 1];
+		for(int id=0; id<enclosing.length; id++)
+			counts[typeIds[id] + 1]++;
+		for(int i=1; i<counts.length; i++)
+			counts[i] += counts[i-1];
+		int[] sorted = new int[enclosing.length];
+		for(int id=0; id<enclosing.length; id++)
+			sorted[counts[typeIds[id]]++] = id;
+
+		Map<String, int[]> ids = new HashMap<>();
+		for(int type=0, from=0; type<typeNames.length; from=counts[type++])
+			if(counts[type] > from)
+				ids.put(typeNames[type], Arrays.copyOfRange(sorted, from, counts[type]));
+		this.ids = Collections.unmodifiableMap(ids);
+	}
+
+	/**
+	 * Gets the root of the indexed tree
+	 * @return the root of the tree
+	 */
+	public SyntaxTree root() {
+		return root;
+	}
+
+	/**
+	 * Gets the types of the indexed nodes
+	 * @return the set of the types
+	 */
+	public Set<String> types() {
+		return ids.keySet();
+	}
+
+	/**
+	 * Counts the nodes of a type
+	 * @param type the type of the nodes
+	 * @return the number of the nodes of the specified type
+	 */
+	public int count(String type) {
+		return ids(type).length;
+	}
+
+	/**
+	 * Gets the nodes of a type, in preorder
+	 * @param type the type of the nodes
+	 * @return the list of the nodes of the specified type
+	 */
+	public List<SyntaxTree> nodes(String type) {
+		int[] ids = ids(type);
+		return new AbstractList<SyntaxTree>() {
+			@Override
+			public SyntaxTree get(int index) {
+				return node(ids[index]);
+			}
+
+			@Override
+			public int size() {
+				return ids.length;
+			}
+		};
+	}
+
+	/**
+	 * Gets the innermost node of a type that covers a position of the source string
+	 * @param type the type of the node
+	 * @param position the position in the source string
+	 * @return the innermost node of the specified type whose token contains the position, or null if there is no such node
+	 */
+	public SyntaxTree covering(String type, int position) {
+		int[] ids = ids(type);
+
+		//the last node of the type that starts before or at the position
+		int low = 0, high = ids.length-1, candidate = -1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			if(start(ids[middle]) <= position) {
+				candidate = ids[middle];
+				low = middle+1;
+			}
+			else
+				high = middle-1;
+		}
+
+		//any other node of the type that covers the position encloses the candidate
+		while(candidate >= 0 && end(candidate) < position)
+			candidate = enclosing[candidate];
+
+		return candidate < 0 ? null : node(candidate);
+	}
+
+	private int[] ids(String type) {
+		int[] ids = this.ids.get(type);
+		return ids == null ? NO_NODES : ids;
+	}
+
+	private SyntaxTree node(int id) {
+		return nodes == null ? arena.cursor(offset + id) : nodes[id];
+	}
+
+	private int start(int id) {
+		return nodes == null ? arena.start(offset + id) : nodes[id].start();
+	}
+
+	private int end(int id) {
+		return nodes == null ? arena.end(offset + id) : nodes[id].end();
+	}
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Set;
 
 import jointyc.analysis.lexer.Lexer;
+import jointyc.charsequence.LineIndex;
 
 /**
  * Internal implementation of a {@link SyntaxTree} for the {@link StandardParser}
@@ -36,9 +37,12 @@ final class SyntaxNode implements SyntaxTree{
 	String type;
 	int start;
 	int end;
+	//the position of the last character examined to parse this node
+	int lookahead;
+	//the number of the production of a non-terminal node, or -1
+	int production = -1;
 	Set<String> similarTypes;
-	CharSequence source;
-	Lexer lexer;
+	ParsedInput input;
 	
 	LinkedList<SyntaxNode> nexts;
 	
@@ -46,10 +50,9 @@ final class SyntaxNode implements SyntaxTree{
 		nexts.addFirst(next);
 	}
 	
-	public SyntaxNode(Lexer lexer){
+	public SyntaxNode(ParsedInput input){
 		nexts = new LinkedList<>();
-		this.source = lexer.input();
-		this.lexer = lexer;
+		this.input = input;
 	}
 	
 	public List<SyntaxNode> getNexts(){
@@ -115,7 +118,7 @@ final class SyntaxNode implements SyntaxTree{
 	@Override
 	public CharSequence token() {
 		if(start <= end)
-			return source.subSequence(start, end+1);
+			return input.source.subSequence(start, end+1);
 		else
 			return "";
 	}
@@ -127,12 +130,37 @@ final class SyntaxNode implements SyntaxTree{
 
 	@Override
 	public CharSequence source() {
-		return source;
+		return input.source;
 	}
 
 	@Override
 	public Lexer lexer() {
-		return lexer;
+		return input.lexer;
+	}
+
+	@Override
+	public LineIndex lineIndex() {
+		return input.lineIndex();
+	}
+
+	@Override
+	public String internedToken() {
+		return input.interner().intern(this);
+	}
+
+	@Override
+	public int production() {
+		return production;
+	}
+
+	@Override
+	public Grammar grammar() {
+		return input.grammar;
+	}
+
+	@Override
+	public SyntaxIndex index() {
+		return input.root == this ? input.index(this) : new SyntaxIndex(this);
 	}
 
 	@Override
@@ -0,0 +1,331 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Defines a compiled structural query over syntax trees, that selects the nodes matched by a path of steps.<br>
+ * <br>
+ * A query is a sequence of steps. Each step starts with an axis, followed by a node test and by zero or more predicates:
+ * <ul>
+ * <li><code>/</code> selects the children of the nodes selected by the previous step (the first step selects the root);
+ * <li><code>//</code> selects the descendants of the nodes selected by the previous step (the first step selects the root and all its descendants);
+ * <li><code>type</code> matches the non-terminal nodes of the specified type, <code>$type</code> the terminal ones
+ * (see {@link EditableParser#TERMINAL_PREFIX}), <code>*</code> any node and <code>$*</code> any terminal node;
+ * <li><code>[="text"]</code> matches the nodes whose token equals the text, <code>[~"regex"]</code> those whose token matches the regular expression,
+ * <code>[#]</code> the nodes without children and <code>[!#]</code> the nodes with some child.
+ * In the strings, the backslash escapes the next character.
+ * </ul>
+ * The axis of the first step can be omitted, and defaults to <code>/</code>. For instance, the query <code>//rule/$ruleName[="axiom"]</code>
+ * selects the terminal nodes of type "ruleName" whose token is "axiom", and whose parent is a node of type "rule", at any depth.<br>
+ * <br>
+ * A query is compiled once, and it can be evaluated on any number of trees, also by different threads.
+ * The types of the query are resolved to integer numbers at each evaluation, so that the nodes are matched
+ * without comparing their types, and any number of queries can be evaluated in a single traversal of the tree
+ * (see {@link #select(SyntaxTree, List)}).
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class SyntaxQuery {
+
+	//the values of the terminal test of a step
+	private static final int NON_TERMINAL = 0, TERMINAL = 1, ANY = 2;
+
+	//a predicate over the token or the children of a node
+	private interface Predicate {
+		boolean test(SyntaxTree tree);
+	}
+
+	private final String expression;
+
+	//the steps, indexed by their position in the query
+	private final boolean[] descendant;
+	private final String[] types;
+	private final int[] terminal;
+	private final Predicate[][] predicates;
+
+	private SyntaxQuery(String expression, List<Boolean> descendant, List<String> types, List<Integer> terminal, List<Predicate[]> predicates) {
+		this.expression = expression;
+		this.descendant = new boolean[descendant.size()];
+		this.terminal = new int[terminal.size()];
+		for(int i=0; i<this.descendant.length; i++) {
+			this.descendant[i] = descendant.get(i);
+			this.terminal[i] = terminal.get(i);
+		}
+		this.types = types.toArray(new String[types.size()]);
+		this.predicates = predicates.toArray(new Predicate[predicates.size()][]);
+	}
+
+	/**
+	 * Compiles a query.
+	 * @param expression the expression of the query
+	 * @return the compiled query
+	 * @throws IllegalArgumentException if the expression is malformed
+	 */
+	public static SyntaxQuery compile(String expression) throws IllegalArgumentException {
+		List<Boolean> descendant = new ArrayList<>();
+		List<String> types = new ArrayList<>();
+		List<Integer> terminal = new ArrayList<>();
+		List<Predicate[]> predicates = new ArrayList<>();
+
+		int i = skipSpaces(expression, 0);
+		if(i == expression.length())
+			throw syntaxError(expression, i, "empty query");
+
+		while(i < expression.length()) {
+			boolean step = expression.startsWith("/", i);
+			if(!step && !descendant.isEmpty())
+				throw syntaxError(expression, i, "'/' expected");
+			descendant.add(expression.startsWith("//", i));
+			if(step)
+				i = skipSpaces(expression, i + (expression.startsWith("//", i) ? 2 : 1));
+
+			boolean isTerminal = expression.startsWith(EditableParser.TERMINAL_PREFIX, i);
+			if(isTerminal)
+				i += EditableParser.TERMINAL_PREFIX.length();
+			int start = i;
+			while(i < expression.length() && "/[]\"".indexOf(expression.charAt(i)) < 0 && !Character.isWhitespace(expression.charAt(i)))
+				i++;
+			if(i == start)
+				throw syntaxError(expression, i, "node test expected");
+			String type = expression.substring(start, i);
+			types.add(type.equals("*") ? null : type);
+			terminal.add(isTerminal ? TERMINAL : type.equals("*") ? ANY : NON_TERMINAL);
+
+			List<Predicate> stepPredicates = new ArrayList<>();
+			i = skipSpaces(expression, i);
+			while(expression.startsWith("[", i)) {
+				i = skipSpaces(expression, i+1);
+				if(expression.startsWith("!#", i) || expression.startsWith("#", i)) {
+					boolean leaf = expression.startsWith("#", i);
+					stepPredicates.add(tree -> (tree.nexts() == 0) == leaf);
+					i += leaf ? 1 : 2;
+				}
+				else if(expression.startsWith("=", i) || expression.startsWith("~", i)) {
+					char operator = expression.charAt(i);
+					StringBuilder string = new StringBuilder();
+					i = string(expression, skipSpaces(expression, i+1), string);
+					if(operator == '=') {
+						String text = string.toString();
+						stepPredicates.add(tree -> tree.tokenEquals(text));
+					}
+					else {
+						try {
+							Pattern pattern = Pattern.compile(string.toString());
+							stepPredicates.add(tree -> pattern.matcher(tree.token()).matches());
+						}
+						catch(PatternSyntaxException e) {
+							throw new IllegalArgumentException(e.getMessage() + " in the query: " + expression, e);
+						}
+					}
+				}
+				else
+					throw syntaxError(expression, i, "predicate expected");
+
+				i = skipSpaces(expression, i);
+				if(!expression.startsWith("]", i))
+					throw syntaxError(expression, i, "']' expected");
+				i = skipSpaces(expression, i+1);
+			}
+			predicates.add(stepPredicates.toArray(new Predicate[stepPredicates.size()]));
+		}
+
+		return new SyntaxQuery(expression, descendant, types, terminal, predicates);
+	}
+
+	/**
+	 * Gets the expression this query was compiled from
+	 * @return the expression of this query
+	 */
+	public String expression() {
+		return expression;
+	}
+
+	/**
+	 * Selects the nodes of a tree matched by this query
+	 * @param tree the root of the tree
+	 * @return the selected nodes, in preorder
+	 */
+	public List<SyntaxTree> select(SyntaxTree tree) {
+		return select(tree, Collections.singletonList(this)).get(0);
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/**
+	 * Selects the nodes of a tree matched by each of the specified queries, in a single traversal of the tree.
+	 * @param tree the root of the tree
+	 * @param queries the queries to evaluate
+	 * @return the list of the nodes selected by each query, in preorder, at the same index of the query
+	 */
+	public static List<List<SyntaxTree>> select(SyntaxTree tree, List<SyntaxQuery> queries) {
+		//the steps of all the queries are the states of the evaluation, and the types are resolved to integer numbers
+		int size = 0;
+		for(SyntaxQuery query : queries)
+			size += query.types.length;
+		int[] query = new int[size], typeIds = new int[size];
+		boolean[] last = new boolean[size], descendant = new boolean[size];
+		int[] terminal = new int[size];
+		Predicate[][] predicates = new Predicate[size][];
+		int[] initial = new int[queries.size()];
+
+		Map<String, Integer> ids = new HashMap<>();
+		for(int q=0, state=0; q<queries.size(); q++) {
+			SyntaxQuery compiled = queries.get(q);
+			initial[q] = state;
+			for(int step=0; step<compiled.types.length; step++, state++) {
+				query[state] = q;
+				last[state] = step == compiled.types.length-1;
+				descendant[state] = compiled.descendant[step];
+				terminal[state] = compiled.terminal[step];
+				predicates[state] = compiled.predicates[step];
+				String type = compiled.types[step];
+				if(type == null)
+					typeIds[state] = -1;
+				else {
+					Integer id = ids.get(type);
+					if(id == null)
+						ids.put(type, id = ids.size());
+					typeIds[state] = id;
+				}
+			}
+		}
+
+		//the types of an arena are resolved once
+		SyntaxArena arena = tree instanceof CompactSyntaxTree ? ((CompactSyntaxTree) tree).arena : null;
+		int[] arenaIds = null;
+		if(arena != null) {
+			arenaIds = new int[arena.types.length];
+			for(int i=0; i<arenaIds.length; i++) {
+				Integer id = ids.get(arena.types[i]);
+				arenaIds[i] = id == null ? -2 : id;
+			}
+		}
+
+		List<List<SyntaxTree>> selected = new ArrayList<>();
+		for(int q=0; q<queries.size(); q++)
+			selected.add(new ArrayList<>());
+
+		//the states are marked by the node that added them last, to avoid duplicates
+		int[] marks = new int[size];
+		Arrays.fill(marks, -1);
+		int visited = 0;
+
+		//the iterators over the children of the open nodes, with the states of the children
+		Deque<Iterator<SyntaxTree>> iterators = new ArrayDeque<>();
+		Deque<int[]> frames = new ArrayDeque<>();
+		SyntaxTree next = tree;
+		int[] states = initial;
+		while(next != null) {
+			int type;
+			if(arena != null)
+				type = arenaIds[arena.typeId(((CompactSyntaxTree) next).node)];
+			else {
+				Integer id = ids.get(next.type());
+				type = id == null ? -2 : id;
+			}
+			boolean nodeTerminal = next.terminal();
+
+			int[] children = new int[states.length * 2];
+			int count = 0;
+			for(int state : states) {
+				if(descendant[state] && marks[state] != visited) {
+					marks[state] = visited;
+					children[count++] = state;
+				}
+				if((typeIds[state] < 0 || typeIds[state] == type)
+						&& (terminal[state] == ANY || (terminal[state] == TERMINAL) == nodeTerminal)
+						&& test(predicates[state], next)) {
+					if(last[state])
+						selected.get(query[state]).add(next);
+					else if(marks[state+1] != visited) {
+						marks[state+1] = visited;
+						children[count++] = state+1;
+					}
+				}
+			}
+			visited++;
+
+			if(count > 0 && !nodeTerminal) {
+				iterators.push(next.iterator());
+				frames.push(Arrays.copyOf(children, count));
+			}
+
+			next = null;
+			while(next == null && !iterators.isEmpty()) {
+				if(iterators.peek().hasNext()) {
+					next = iterators.peek().next();
+					states = frames.peek();
+				}
+				else {
+					iterators.pop();
+					frames.pop();
+				}
+			}
+		}
+
+		return selected;
+	}
+
+	private static boolean test(Predicate[] predicates, SyntaxTree tree) {
+		for(Predicate predicate : predicates)
+			if(!predicate.test(tree))
+				return false;
+		return true;
+	}
+
+	private static int skipSpaces(String expression, int i) {
+		while(i < expression.length() && Character.isWhitespace(expression.charAt(i)))
+			i++;
+		return i;
+	}
+
+	//reads a quoted string, and returns the position that follows it
+	private static int string(String expression, int i, StringBuilder string) {
+		if(!expression.startsWith("\"", i))
+			throw syntaxError(expression, i, "'\"' expected");
+		for(i++; i < expression.length(); i++) {
+			char c = expression.charAt(i);
+			if(c == '"')
+				return i+1;
+			if(c == '\\' && i+1 < expression.length())
+				c = expression.charAt(++i);
+			string.append(c);
+		}
+		throw syntaxError(expression, i, "unterminated string");
+	}
+
+	private static IllegalArgumentException syntaxError(String expression, int position, String message) {
+		return new IllegalArgumentException(message + " at position " + position + " of the query: " + expression);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reduces the nodes of a syntax tree to values, from the leaves to the root, so that the tree
+ * does not need to be kept once its nodes are reduced (see {@link Parser#parse(CharSequence, SyntaxReducer)}).<br>
+ * <br>
+ * When a reducer is used during a parsing, the nodes are reduced as soon as their rules are recognized. Then, a node
+ * can be reduced even if it is discarded later, when the parser backtracks to another production: the reductions should
+ * not have side effects, and the errors found by a reduction should be carried by the reduced value, rather than thrown.
+ * The non-terminal nodes passed to the reducer have no children, and they are described by their type, their position
+ * and their production (see {@link SyntaxTree#production()}).
+ * 
+ * @param <R> the type of the reduced values
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public interface SyntaxReducer<R> {
+
+	/**
+	 * Reduces a terminal node
+	 * @param token the terminal node
+	 * @return the value of the node
+	 */
+	R terminal(SyntaxTree token);
+
+	/**
+	 * Reduces a non-terminal node, given the values of its children
+	 * @param node the non-terminal node
+	 * @param children the values of the children of the node, in order
+	 * @return the value of the node
+	 */
+	R nonTerminal(SyntaxTree node, List<R> children);
+
+	/**
+	 * Reduces all the nodes of a syntax tree, in postorder.
+	 * @param tree the root of the tree
+	 * @param reducer the reducer
+	 * @return the value of the root
+	 */
+	static <R> R reduce(SyntaxTree tree, SyntaxReducer<R> reducer) {
+		if(tree.terminal())
+			return reducer.terminal(tree);
+
+		//the open nodes, with the iterators over their children and the values of the reduced children
+		Deque<SyntaxTree> trees = new ArrayDeque<>();
+		Deque<SyntaxIterator> iterators = new ArrayDeque<>();
+		Deque<List<R>> values = new ArrayDeque<>();
+		trees.push(tree);
+		iterators.push(tree.iterator());
+		values.push(new ArrayList<>());
+
+		while(true) {
+			if(iterators.peek().hasNext()) {
+				SyntaxTree next = iterators.peek().next();
+				if(next.terminal())
+					values.peek().add(reducer.terminal(next));
+				else {
+					trees.push(next);
+					iterators.push(next.iterator());
+					values.push(new ArrayList<>());
+				}
+			}
+			else {
+				iterators.pop();
+				R value = reducer.nonTerminal(trees.pop(), values.pop());
+				if(values.isEmpty())
+					return value;
+				values.peek().add(value);
+			}
+		}
+	}
+}
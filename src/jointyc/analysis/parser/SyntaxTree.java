@@ -21,6 +21,7 @@ import java.io.Serializable;
 import java.util.Set;
 
 import jointyc.analysis.lexer.Lexer;
+import jointyc.charsequence.LineIndex;
 
 /**
  * Defines a recursive data structure, an m-ary tree, used to represent the
@@ -85,6 +86,153 @@ public interface SyntaxTree extends Iterable<SyntaxTree>, Serializable {
 	 * @return the token itself as string
 	 */
 	public CharSequence token();
+	
+	/**
+	 * Gets the length of this token, without extracting it from the source string.
+	 * 
+	 * @return the number of characters of this token
+	 */
+	public default int tokenLength() {
+		return start() <= end() ? end() - start() + 1 : 0;
+	}
+	
+	/**
+	 * Gets a character of this token, without extracting it from the source string.
+	 * 
+	 * @param index the index of the character in this token
+	 * @return the character at the specified index
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #tokenLength()}
+	 */
+	public default char tokenCharAt(int index) {
+		if(index < 0 || index >= tokenLength())
+			throw new IndexOutOfBoundsException("index: " + index + ", length: " + tokenLength());
+		return source().charAt(start() + index);
+	}
+	
+	/**
+	 * Compares this token with a string, without extracting it from the source string.
+	 * 
+	 * @param string the string to compare
+	 * @return true if the token and the string contain the same characters, false otherwise
+	 */
+	public default boolean tokenEquals(CharSequence string) {
+		int length = tokenLength();
+		if(string == null || string.length() != length)
+			return false;
+		
+		CharSequence source = source();
+		int start = start();
+		if(source instanceof String && string instanceof String)
+			return ((String) source).regionMatches(start, (String) string, 0, length);
+		
+		for(int i=0; i<length; i++)
+			if(source.charAt(start + i) != string.charAt(i))
+				return false;
+		return true;
+	}
+	
+	/**
+	 * Computes the hash code of this token, without extracting it from the source string.
+	 * The hash code is the same of the {@link String} containing the token.
+	 * 
+	 * @return the hash code of this token
+	 */
+	public default int tokenHash() {
+		CharSequence source = source();
+		int hash = 0;
+		for(int i=start(), end=end(); i<=end; i++)
+			hash = 31 * hash + source.charAt(i);
+		return hash;
+	}
+	
+	/**
+	 * Parses this token as a signed decimal integer, without extracting it from the source string.
+	 * 
+	 * @return the integer represented by this token
+	 * @throws NumberFormatException if this token is not a parsable integer
+	 * @see Integer#parseInt(String)
+	 */
+	public default int parseIntToken() {
+		return parseIntToken(10);
+	}
+	
+	/**
+	 * Parses this token as a signed integer in the specified radix, without extracting it from the source string.
+	 * 
+	 * @param radix the radix used to parse the token
+	 * @return the integer represented by this token
+	 * @throws NumberFormatException if this token is not a parsable integer, or the radix is out of range
+	 * @see Integer#parseInt(String, int)
+	 */
+	public default int parseIntToken(int radix) {
+		if(radix < Character.MIN_RADIX)
+			throw new NumberFormatException("radix " + radix + " less than Character.MIN_RADIX");
+		if(radix > Character.MAX_RADIX)
+			throw new NumberFormatException("radix " + radix + " greater than Character.MAX_RADIX");
+		
+		CharSequence source = source();
+		int start = start(), length = tokenLength();
+		if(length == 0)
+			throw new NumberFormatException("For input string: \"\"");
+		
+		//accumulates negatively, as Integer.parseInt does, to reach Integer.MIN_VALUE
+		int i = 0, limit = -Integer.MAX_VALUE, result = 0;
+		boolean negative = false;
+		char first = source.charAt(start);
+		if(first == '-' || first == '+') {
+			negative = first == '-';
+			if(negative)
+				limit = Integer.MIN_VALUE;
+			if(length == 1)
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			i++;
+		}
+		
+		int multmin = limit / radix;
+		for(; i<length; i++) {
+			int digit = Character.digit(source.charAt(start + i), radix);
+			if(digit < 0 || result < multmin)
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			result *= radix;
+			if(result < limit + digit)
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+	
+	/**
+	 * Copies the characters of this token to an array, without extracting it from the source string.
+	 * 
+	 * @param destination the destination array
+	 * @param offset the index of the array at which the first character is copied
+	 * @return the number of copied characters, that is {@link #tokenLength()}
+	 * @throws IndexOutOfBoundsException if the array is not large enough
+	 */
+	public default int copyTokenTo(char[] destination, int offset) {
+		CharSequence source = source();
+		int start = start(), length = tokenLength();
+		if(offset < 0 || offset + length > destination.length)
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + destination.length);
+		
+		if(source instanceof String)
+			((String) source).getChars(start, start + length, destination, offset);
+		else
+			for(int i=0; i<length; i++)
+				destination[offset + i] = source.charAt(start + i);
+		return length;
+	}
+	
+	/**
+	 * Gets this token as a canonical string. The trees produced by the same parsing share a table of tokens,
+	 * so that equal tokens are returned as the same string instance, and a new string is created only the first time a token is requested.<br>
+	 * The default implementation returns the token interned through {@link String#intern()}.
+	 * 
+	 * @return the canonical string of this token
+	 */
+	public default String internedToken() {
+		return token().toString().intern();
+	}
 
 	/**
 	 * Gets the source string the token was extracted from.
@@ -96,10 +244,84 @@ public interface SyntaxTree extends Iterable<SyntaxTree>, Serializable {
 	/**
 	 * Gets the lexer used for the parsing.
 	 * 
-	 * @return the lexer used by the parser
+	 * @return the lexer used by the parser, or null if this tree is frozen
 	 */
 	public Lexer lexer();
 	
+	/**
+	 * Creates a frozen copy of this tree: a self-contained and immutable tree that keeps only the source string
+	 * and the compact data of the nodes, without any reference to the lexer or to other state of the parser.
+	 * A frozen tree can be retained after the compilation, and shared by different threads.<br>
+	 * The {@link #lexer()} method of a frozen tree returns null, and freezing a frozen tree returns the tree itself.
+	 * 
+	 * @return the frozen copy of this tree
+	 */
+	public default SyntaxTree freeze() {
+		return ArenaBuilder.freeze(this);
+	}
+	
+	/**
+	 * Gets the number of the production that produced this tree, in the grammar returned by {@link #grammar()}.
+	 * The number identifies the exact alternative of the rule, so that it can replace the queries on the children of the tree
+	 * (see {@link #query(String, String...)}).<br>
+	 * The default implementation returns -1.
+	 * 
+	 * @return the number of the production (see {@link Grammar#production(int)}), or -1 if this tree is terminal or the production is unknown
+	 */
+	public default int production() {
+		return -1;
+	}
+	
+	/**
+	 * Gets the grammar this tree was parsed with.<br>
+	 * The default implementation returns null.
+	 * 
+	 * @return the grammar snapshot used by the parsing, or null if it is unknown
+	 */
+	public default Grammar grammar() {
+		return null;
+	}
+	
+	/**
+	 * Gets the line index of the source string. The trees produced by the same parsing share the same index,
+	 * which is created at the first request.<br>
+	 * The default implementation creates a new index at each invocation.
+	 * 
+	 * @return the line index of the source string
+	 */
+	public default LineIndex lineIndex() {
+		return new LineIndex(source());
+	}
+	
+	/**
+	 * Gets the index of the nodes of this tree by type. The root of a tree produced by a parsing keeps its index,
+	 * which is created at the first request, or by the parsing itself (see {@link StandardParser#setIndexedTrees(boolean)}).<br>
+	 * The default implementation creates a new index at each invocation.
+	 * 
+	 * @return the index of this tree
+	 */
+	public default SyntaxIndex index() {
+		return new SyntaxIndex(this);
+	}
+	
+	/**
+	 * Gets the line at which this token starts.
+	 * 
+	 * @return the line of the start character of this token, starting from 1
+	 */
+	public default int line() {
+		return lineIndex().line(start());
+	}
+	
+	/**
+	 * Gets the column at which this token starts.
+	 * 
+	 * @return the column of the start character of this token, starting from 1
+	 */
+	public default int column() {
+		return lineIndex().column(start());
+	}
+	
 	
 	/**
 	 * Queries for a rule start part. Checks if this tree has a certain type, and
@@ -146,6 +368,7 @@ public interface SyntaxTree extends Iterable<SyntaxTree>, Serializable {
 	 * @param type the type of this syntax node
 	 * @param production the types of the first k children of this tree
 	 * @return true if the query is successful, false otherwise
+	 * @see SyntaxQuery
 	 */
 	public default boolean query(String type, String... production) {
 		if (type == null || !type.equals(type()))
@@ -0,0 +1,298 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes syntax trees in a compact binary format, and reloads them by mapping the files in memory.<br>
+ * <br>
+ * A file stores the nodes of a tree as columns of integers, in the same layout of the compact trees
+ * (see {@link StandardParser#setCompactTrees(boolean)}), preceded by a header with the table of the types
+ * and the table of the sets of similar types. The source string can be embedded in the file or referenced,
+ * in which case it must be supplied when the file is mapped, and it is checked against the length and the hash code
+ * recorded in the file.<br>
+ * A mapped tree reads its nodes directly from the mapped file, so it is available without deserializing any node, and
+ * its nodes are loaded only when they are accessed. Like the frozen trees, the mapped trees have no lexer (see {@link SyntaxTree#freeze()}).
+ * The mapped files must not be modified while their trees are in use.<br>
+ * <br>
+ * The file format is versioned. All the numbers are stored in little-endian order, the strings of the tables in UTF-8
+ * and the embedded source as UTF-16 characters.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class SyntaxTreeFile {
+
+	private static final int MAGIC = 0x5453594A; //"JYST"
+	private static final int VERSION = 1;
+
+	private static final int EMBEDDED_SOURCE = 1;
+
+	//the number of columns of the nodes
+	private static final int COLUMNS = 6;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private SyntaxTreeFile() {}
+
+	/**
+	 * Writes a syntax tree to a file. The tree is written as if it was the root of the whole syntax tree.
+	 * @param tree the tree to write
+	 * @param file the path of the file, which is created or overwritten
+	 * @param embedSource true if the source string must be written in the file, false if it must be supplied when the file is mapped
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void write(SyntaxTree tree, Path file, boolean embedSource) throws IOException {
+		SyntaxArena arena = ArenaBuilder.compact(tree).arena;
+		CharSequence source = arena.input.source;
+
+		byte[][] types = new byte[arena.types.length][];
+		int headerSize = 7*4;
+		for(int i=0; i<types.length; i++) {
+			types[i] = arena.types[i].getBytes(StandardCharsets.UTF_8);
+			headerSize += 4 + types[i].length;
+		}
+		List<byte[][]> similarTypes = new ArrayList<>();
+		headerSize += 4;
+		for(Set<String> set : arena.similarTypes) {
+			byte[][] names = new byte[set.size()][];
+			int i = 0;
+			for(String type : set) {
+				names[i] = type.getBytes(StandardCharsets.UTF_8);
+				headerSize += 4 + names[i++].length;
+			}
+			similarTypes.add(names);
+			headerSize += 4;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(align(headerSize)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(embedSource ? EMBEDDED_SOURCE : 0).putInt(arena.size)
+			.putInt(source.length()).putInt(hash(source)).putInt(types.length);
+		for(byte[] type : types)
+			header.putInt(type.length).put(type);
+		header.putInt(similarTypes.size());
+		for(byte[][] names : similarTypes) {
+			header.putInt(names.length);
+			for(byte[] name : names)
+				header.putInt(name.length).put(name);
+		}
+		header.position(header.capacity());
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			write(channel, header);
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if(embedSource) {
+				for(int i=0; i<source.length(); i++) {
+					if(buffer.remaining() < 2)
+						write(channel, buffer);
+					buffer.putChar(source.charAt(i));
+				}
+				//aligns the columns to the size of an integer
+				if(source.length() % 2 != 0)
+					buffer.putChar('\0');
+				write(channel, buffer);
+			}
+
+			for(int column=0; column<COLUMNS; column++) {
+				for(int node=0; node<arena.size; node++) {
+					if(buffer.remaining() < 4)
+						write(channel, buffer);
+					buffer.putInt(column(arena, column, node));
+				}
+			}
+			write(channel, buffer);
+		}
+	}
+
+	/**
+	 * Maps a file that embeds its source string.
+	 * @param file the path of the file
+	 * @return the root of the mapped tree
+	 * @throws IOException if an I/O error occurs, if the file is not valid or if it does not embed its source
+	 */
+	public static SyntaxTree map(Path file) throws IOException {
+		return map(file, null);
+	}
+
+	/**
+	 * Maps a file, using the specified source string. If the file embeds its source, the specified source is ignored
+	 * and can be null.
+	 * @param file the path of the file
+	 * @param source the source string of the tree
+	 * @return the root of the mapped tree
+	 * @throws IOException if an I/O error occurs, if the file is not valid or if the source string does not match the tree
+	 */
+	public static SyntaxTree map(Path file, CharSequence source) throws IOException {
+		MappedByteBuffer mapped;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("file too large: " + file);
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if(buffer.getInt() != MAGIC)
+				throw new IOException("not a syntax tree file: " + file);
+			int version = buffer.getInt();
+			if(version != VERSION)
+				throw new IOException("unsupported syntax tree file version: " + version);
+			int flags = buffer.getInt();
+			int size = buffer.getInt();
+			int sourceLength = buffer.getInt();
+			int sourceHash = buffer.getInt();
+
+			String[] types = new String[buffer.getInt()];
+			for(int i=0; i<types.length; i++)
+				types[i] = string(buffer);
+
+			List<Set<String>> similarTypes = new ArrayList<>();
+			for(int i=buffer.getInt(); i>0; i--) {
+				Set<String> set = new HashSet<>();
+				for(int j=buffer.getInt(); j>0; j--)
+					set.add(string(buffer));
+				similarTypes.add(Collections.unmodifiableSet(set));
+			}
+			buffer.position(align(buffer.position()));
+
+			if((flags & EMBEDDED_SOURCE) != 0) {
+				CharBuffer chars = slice(buffer, sourceLength*2L).asCharBuffer();
+				source = new MappedCharSequence(chars, 0, sourceLength);
+				buffer.position(align(buffer.position()));
+			}
+			else if(source == null)
+				throw new IOException("the source is not embedded in the syntax tree file: " + file);
+			else if(source.length() != sourceLength || hash(source) != sourceHash)
+				throw new IOException("the source does not match the syntax tree file: " + file);
+
+			IntBuffer[] columns = new IntBuffer[COLUMNS];
+			for(int i=0; i<columns.length; i++)
+				columns[i] = slice(buffer, size*4L).asIntBuffer();
+
+			return new MappedSyntaxArena(new ParsedInput(source, null, null), types, Collections.unmodifiableList(similarTypes), size,
+					columns[0], columns[1], columns[2], columns[3], columns[4], columns[5]).cursor(0);
+		}
+		catch(BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+			throw new IOException("corrupted syntax tree file: " + file, e);
+		}
+	}
+
+	private static int column(SyntaxArena arena, int column, int node) {
+		switch(column) {
+		case 0: return arena.typeId(node);
+		case 1: return arena.start(node);
+		case 2: return arena.end(node);
+		case 3: return arena.next(node);
+		case 4: return arena.flags(node);
+		default: return arena.similarId(node);
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	private static String string(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//gets a little-endian view of the next bytes of a buffer, and skips them
+	private static ByteBuffer slice(ByteBuffer buffer, long length) {
+		if(length > buffer.remaining())
+			throw new BufferUnderflowException();
+		ByteBuffer slice = buffer.slice();
+		slice.limit((int) length);
+		buffer.position(buffer.position() + (int) length);
+		return slice.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int align(int position) {
+		return (position + 3) & ~3;
+	}
+
+	//the same hash code of a string with the same characters
+	private static int hash(CharSequence source) {
+		int hash = 0;
+		for(int i=0; i<source.length(); i++)
+			hash = 31*hash + source.charAt(i);
+		return hash;
+	}
+
+	//a read-only character sequence that reads a mapped buffer by absolute positions
+	private static final class MappedCharSequence implements CharSequence {
+		private final CharBuffer chars;
+		private final int offset;
+		private final int length;
+
+		MappedCharSequence(CharBuffer chars, int offset, int length) {
+			this.chars = chars;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if(index < 0 || index >= length)
+				throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+			return chars.get(offset + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if(start < 0 || end > length || start > end)
+				throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+			return new MappedCharSequence(chars, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			CharBuffer buffer = this.chars.duplicate();
+			buffer.position(offset);
+			buffer.get(chars);
+			return new String(chars);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+/**
+ * Describes an edit of a source string: a number of characters removed at a position,
+ * replaced by a number of inserted characters.<br>
+ * An edit is used to parse the edited source incrementally (see {@link Parser#parse(CharSequence, SyntaxTree, TextEdit)}).
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class TextEdit {
+	private final int position;
+	private final int removedLength;
+	private final int insertedLength;
+
+	/**
+	 * Creates an edit.
+	 * @param position the position of the first character removed or inserted
+	 * @param removedLength the number of characters removed from the previous source
+	 * @param insertedLength the number of characters inserted in the new source
+	 */
+	public TextEdit(int position, int removedLength, int insertedLength) {
+		if(position < 0)
+			throw new IllegalArgumentException("position < 0");
+		if(removedLength < 0)
+			throw new IllegalArgumentException("removedLength < 0");
+		if(insertedLength < 0)
+			throw new IllegalArgumentException("insertedLength < 0");
+		this.position = position;
+		this.removedLength = removedLength;
+		this.insertedLength = insertedLength;
+	}
+
+	/**
+	 * Gets the position of the edit
+	 * @return the position of the first character removed or inserted
+	 */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Gets the number of removed characters
+	 * @return the number of characters removed from the previous source
+	 */
+	public int removedLength() {
+		return removedLength;
+	}
+
+	/**
+	 * Gets the number of inserted characters
+	 * @return the number of characters inserted in the new source
+	 */
+	public int insertedLength() {
+		return insertedLength;
+	}
+
+	/**
+	 * Gets the difference between the length of the new source and the length of the previous one
+	 * @return the offset to add to the positions following the edit
+	 */
+	public int delta() {
+		return insertedLength - removedLength;
+	}
+
+	/**
+	 * Checks if this edit changes the characters of the previous source between the specified positions, inclusive.
+	 * Characters inserted between the two positions are considered a change.
+	 */
+	boolean changes(int first, int last) {
+		return position <= last && position + removedLength > first;
+	}
+
+	@Override
+	public String toString() {
+		return "TextEdit [position: " + position + "; removed: " + removedLength + "; inserted: " + insertedLength + "]";
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.Arrays;
+
+/**
+ * Defines a table of canonical token strings, used by the trees of a parsing (see {@link SyntaxTree#internedToken()}).<br>
+ * The tokens are looked up by hash code and compared with the source string, so that a string is created only when a token is not found.
+ * The table is an open addressing hash table, synchronized to be shared by different threads.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class TokenInterner {
+	private String[] table = new String[64];
+	private int size;
+
+	/**
+	 * Gets the canonical string of a token.
+	 * @param tree the tree of the token
+	 * @return the canonical string, equal to the token
+	 */
+	synchronized String intern(SyntaxTree tree) {
+		int hash = tree.tokenHash();
+		int mask = table.length - 1;
+
+		int i = spread(hash) & mask;
+		for(String string; (string = table[i]) != null; i = (i+1) & mask)
+			if(string.hashCode() == hash && tree.tokenEquals(string))
+				return string;
+
+		String string = tree.token().toString();
+		table[i] = string;
+		if(++size * 2 > table.length)
+			rehash();
+		return string;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private void rehash() {
+		String[] old = table;
+		table = new String[old.length * 2];
+		int mask = table.length - 1;
+		for(String string : old) {
+			if(string == null)
+				continue;
+			int i = spread(string.hashCode()) & mask;
+			while(table[i] != null)
+				i = (i+1) & mask;
+			table[i] = string;
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		String[] strings = new String[size];
+		int n = 0;
+		for(String string : table)
+			if(string != null)
+				strings[n++] = string;
+		return "TokenInterner " + Arrays.toString(strings);
+	}
+}
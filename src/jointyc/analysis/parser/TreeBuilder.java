@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.Set;
+
+/**
+ * Builds the syntax tree during a parsing, defining the representation of its nodes.<br>
+ * The parser refers to the non-terminal nodes through handles. The children of the node being parsed are
+ * pushed on a stack, which is brought back to a mark when a production fails, and the children above a mark
+ * are popped when the node is created.
+ *
+ * @param <N> the type of the node handles
+ *
+ * @author Salvatore Giamp
+ *
+ */
+abstract class TreeBuilder<N> {
+
+	/**
+	 * The parsed input, shared by all the nodes of the tree
+	 */
+	final ParsedInput input;
+
+	TreeBuilder(ParsedInput input) {
+		this.input = input;
+	}
+
+	/**
+	 * Gets the current size of the children stack
+	 * @return a mark to pass to {@link #reset(int)} or {@link #node(int, String, int, int, int, int)}
+	 */
+	abstract int mark();
+
+	/**
+	 * Brings the children stack back to the specified mark
+	 * @param mark a mark returned by {@link #mark()}
+	 */
+	abstract void reset(int mark);
+
+	/**
+	 * Pushes a terminal node on the children stack
+	 * @param type the token type
+	 * @param start the start position of the token
+	 * @param end the end position of the token
+	 * @param similarTypes the types matched by the token
+	 */
+	abstract void terminal(String type, int start, int end, Set<String> similarTypes);
+
+	/**
+	 * Pushes a non-terminal node on the children stack
+	 * @param node the handle of the node
+	 */
+	abstract void child(N node);
+
+	/**
+	 * Creates a non-terminal node whose children are the ones above the specified mark, popping them from the stack.
+	 * @param mark a mark returned by {@link #mark()} before pushing the children
+	 * @param type the rule head
+	 * @param start the start position of the node
+	 * @param end the end position of the node
+	 * @param lookahead the position of the last character examined to parse the node
+	 * @param production the number of the production of the node in the grammar of the input, or -1
+	 * @return the handle of the node
+	 */
+	abstract N node(int mark, String type, int start, int end, int lookahead, int production);
+
+	/**
+	 * Gets the end position of a node
+	 * @param node the handle of the node
+	 * @return the end position
+	 */
+	abstract int end(N node);
+
+	/**
+	 * Gets the position of the last character examined to parse a node
+	 * @param node the handle of the node
+	 * @return the lookahead of the node
+	 */
+	abstract int lookahead(N node);
+
+	/**
+	 * Gets the builder of the diagnostic parsing, which parses an invalid input again to collect the expected terminals.
+	 * The nodes of the diagnostic parsing are never used.
+	 * @return a builder of the same input, this builder by default
+	 */
+	TreeBuilder<?> diagnostic() {
+		return this;
+	}
+
+	/**
+	 * Completes the syntax tree
+	 * @param root the handle of the root, or null
+	 * @return the syntax tree, or null if the root is null
+	 */
+	abstract SyntaxTree tree(N root);
+}
@@ -20,6 +20,8 @@ package jointyc.analysis.parser.exception;
 import java.util.Collections;
 import java.util.Set;
 
+import jointyc.charsequence.LineIndex;
+
 /**
  * Thrown when a parser has found an unexpected symbol.<br>
  * This exception stores some other information about the event:<br>
@@ -135,22 +137,26 @@ public class UnexpectedSymbolException extends Exception{
 	 * @param source the source string to be parsed
 	 */
 	public UnexpectedSymbolException(Set<ExpectedTerminal> expected, CharSequence found, int position, CharSequence source){
+		this(expected, found, position, source, new LineIndex(source));
+	}
+	
+	/**
+	 * Construct the exception.
+	 * The position of the unexpected symbol, in terms of lines and columns, 
+	 * will be computed through the specified line index of the source string.
+	 * @param expected the set of expected terminal tokens
+	 * @param found the unexpected symbol
+	 * @param position the position of the unexpected symbol, in terms of number of characters
+	 * @param source the source string to be parsed
+	 * @param lines the line index of the source string
+	 */
+	public UnexpectedSymbolException(Set<ExpectedTerminal> expected, CharSequence found, int position, CharSequence source, LineIndex lines){
 		this.source = source;
 		this.unexpected = found!=null? found : "";
 		this.expected = Collections.unmodifiableSet(expected);
 		this.position = position;
-		
-		int c = 1, l = 1;
-		
-		for(int i=0; i<position; i++){
-			if(source.charAt(i) == '\n'){
-				c=1; l++;
-			}
-			else c++;
-		}
-
-		this.line = l;
-		this.column = c;
+		this.line = lines.line(position);
+		this.column = lines.column(position);
 	}
 	
 	@Override
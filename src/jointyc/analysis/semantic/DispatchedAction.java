@@ -0,0 +1,145 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic;
+
+import java.lang.reflect.Method;
+
+import jointyc.analysis.semantic.annotation.NoBufferClear;
+import jointyc.analysis.semantic.annotation.NonTerminalToken;
+import jointyc.analysis.semantic.annotation.ParallelSubtrees;
+import jointyc.analysis.semantic.annotation.Pure;
+import jointyc.analysis.semantic.annotation.TerminalToken;
+
+/**
+ * Describes a semantic action of an interpreter, that is a method annotated with {@link TerminalToken} or {@link NonTerminalToken}.<br>
+ * The actions are described by the {@link InterpreterDispatcher} classes generated at compile time, so that the {@link SemanticAnalyzer}
+ * does not need to read the annotations of the interpreters by reflection. The token types and the rule heads are described as they are
+ * written in the annotations, without the language prefix.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class DispatchedAction {
+
+	final String name;
+	final Class<?>[] parameterTypes;
+	final Class<?> returnType;
+	final boolean varArgs;
+	final String[] terminalTypes;
+	final String[] ruleHeads;
+	final String[][] ruleProductions;
+	final boolean noBufferClear;
+	final boolean parallel;
+	final boolean pure;
+
+	//the described method, when it is known
+	private volatile Method method;
+
+	/**
+	 * Describes a semantic action
+	 * @param name the name of the method
+	 * @param parameterTypes the types of the parameters of the method
+	 * @param returnType the return type of the method
+	 * @param varArgs true if the method takes a variable number of arguments
+	 * @param terminalTypes the values of the {@link TerminalToken} annotations of the method
+	 * @param ruleHeads the rule heads of the {@link NonTerminalToken} annotations of the method
+	 * @param ruleProductions the rule productions of the {@link NonTerminalToken} annotations of the method, in the order of the rule heads
+	 * @param noBufferClear true if the method is annotated with {@link NoBufferClear}
+	 * @param parallel true if the method is annotated with {@link ParallelSubtrees}
+	 * @param pure true if the method is annotated with {@link Pure}
+	 */
+	public DispatchedAction(String name, Class<?>[] parameterTypes, Class<?> returnType, boolean varArgs,
+			String[] terminalTypes, String[] ruleHeads, String[][] ruleProductions,
+			boolean noBufferClear, boolean parallel, boolean pure) {
+		if (ruleHeads.length != ruleProductions.length)
+			throw new IllegalArgumentException("rule heads and productions differ in number");
+		this.name = name;
+		this.parameterTypes = parameterTypes;
+		this.returnType = returnType;
+		this.varArgs = varArgs;
+		this.terminalTypes = terminalTypes;
+		this.ruleHeads = ruleHeads;
+		this.ruleProductions = ruleProductions;
+		this.noBufferClear = noBufferClear;
+		this.parallel = parallel;
+		this.pure = pure;
+	}
+
+	/**
+	 * Describes an annotated method by reflection
+	 * @param method the method
+	 * @return the description of the method
+	 */
+	static DispatchedAction of(Method method) {
+		TerminalToken[] tts = method.getAnnotationsByType(TerminalToken.class);
+		NonTerminalToken[] ntts = method.getAnnotationsByType(NonTerminalToken.class);
+
+		String[] terminalTypes = new String[tts.length];
+		for (int i = 0; i < tts.length; i++)
+			terminalTypes[i] = tts[i].value();
+
+		String[] ruleHeads = new String[ntts.length];
+		String[][] ruleProductions = new String[ntts.length][];
+		for (int i = 0; i < ntts.length; i++) {
+			ruleHeads[i] = ntts[i].ruleHead();
+			ruleProductions[i] = ntts[i].ruleProduction();
+		}
+
+		DispatchedAction action = new DispatchedAction(method.getName(), method.getParameterTypes(), method.getReturnType(), method.isVarArgs(),
+				terminalTypes, ruleHeads, ruleProductions, method.getAnnotation(NoBufferClear.class) != null,
+				method.getAnnotation(ParallelSubtrees.class) != null, method.getAnnotation(Pure.class) != null);
+		action.method = method;
+		return action;
+	}
+
+	/**
+	 * Gets the described method, looking it up by reflection if needed
+	 * @param interpreterClass the class that declares the method
+	 * @return the method
+	 */
+	Method method(Class<?> interpreterClass) {
+		Method method = this.method;
+		if (method == null) {
+			try {
+				method = interpreterClass.getDeclaredMethod(name, parameterTypes);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException("the dispatcher of " + interpreterClass.getName() + " is out of date: " + this, e);
+			}
+			this.method = method;
+		}
+		return method;
+	}
+
+	/**
+	 * Gets the annotation of a rule of the described method
+	 * @param interpreterClass the class that declares the method
+	 * @param rule the index of the rule
+	 * @return the annotation of the rule
+	 */
+	NonTerminalToken ruleAnnotation(Class<?> interpreterClass, int rule) {
+		return method(interpreterClass).getAnnotationsByType(NonTerminalToken.class)[rule];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder(returnType.getSimpleName()).append(' ').append(name).append('(');
+		for (int i = 0; i < parameterTypes.length; i++)
+			string.append(i > 0 ? ", " : "").append(parameterTypes[i].getSimpleName());
+		return string.append(')').toString();
+	}
+}
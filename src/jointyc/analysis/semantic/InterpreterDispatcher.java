@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic;
+
+import jointyc.analysis.parser.SyntaxTree;
+
+/**
+ * Calls the semantic actions of an interpreter class without reflection.<br>
+ * The dispatchers are generated at compile time by the {@link jointyc.analysis.semantic.processor.DispatcherProcessor}, in the package of
+ * the interpreter class, with the binary name of the interpreter class plus the {@link #SUFFIX}. When a dispatcher exists for the exact
+ * class of an interpreter, the {@link SemanticAnalyzer} uses it instead of reading the annotations of the interpreter and calling its methods by reflection.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public interface InterpreterDispatcher {
+
+	/**
+	 * The suffix of the names of the generated dispatchers
+	 */
+	String SUFFIX = "$$Dispatcher";
+
+	/**
+	 * Gets the interpreter class whose actions are called by this dispatcher
+	 * @return the interpreter class
+	 */
+	Class<? extends Interpreter> interpreterClass();
+
+	/**
+	 * Gets the value of the {@link jointyc.analysis.semantic.annotation.Language} annotation of the interpreter class
+	 * @return the language of the interpreter, or null if the class is not annotated
+	 */
+	String language();
+
+	/**
+	 * Describes the semantic actions of the interpreter class. The actions are numbered by their index in the returned array.
+	 * @return the descriptions of the actions
+	 */
+	DispatchedAction[] actions();
+
+	/**
+	 * Gets the interpreters held by the fields of an interpreter, whose actions are used with a lower priority
+	 * @param interpreter the interpreter
+	 * @return the interpreters of the fields of the interpreter, or null if the fields must be read by reflection
+	 */
+	Interpreter[] interpreters(Interpreter interpreter);
+
+	/**
+	 * Calls a semantic action
+	 * @param interpreter the interpreter
+	 * @param action the number of the action
+	 * @param arguments the arguments, whose types match the parameters of the action
+	 * @return the result of the action, or null for the void actions
+	 * @throws Throwable if the action throws an exception
+	 */
+	Object invoke(Interpreter interpreter, int action, Object[] arguments) throws Throwable;
+
+	/**
+	 * Calls a semantic action that takes and returns primitive values, passing them as raw bits
+	 * (see {@link Double#doubleToRawLongBits(double)} and {@link Float#floatToRawIntBits(float)})
+	 * @param interpreter the interpreter
+	 * @param action the number of the action
+	 * @param bits the array of the raw bits of the arguments
+	 * @param offset the index of the first argument in the array
+	 * @return the raw bits of the result
+	 * @throws Throwable if the action throws an exception
+	 */
+	long invokePrimitive(Interpreter interpreter, int action, long[] bits, int offset) throws Throwable;
+
+	/**
+	 * Calls a terminal semantic action that returns a primitive value
+	 * @param interpreter the interpreter
+	 * @param action the number of the action
+	 * @param tree the terminal node
+	 * @return the raw bits of the result
+	 * @throws Throwable if the action throws an exception
+	 */
+	long invokePrimitive(Interpreter interpreter, int action, SyntaxTree tree) throws Throwable;
+}
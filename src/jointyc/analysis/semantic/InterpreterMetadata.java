@@ -0,0 +1,405 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+
+import jointyc.analysis.parser.EditableParser;
+import jointyc.analysis.parser.Grammar;
+import jointyc.analysis.parser.SyntaxTree;
+import jointyc.analysis.semantic.annotation.Language;
+import jointyc.analysis.semantic.annotation.NonTerminalToken;
+import jointyc.analysis.semantic.annotation.TerminalToken;
+import jointyc.analysis.semantic.exception.MutuallyExclusiveInterpretationsException;
+import jointyc.analysis.semantic.exception.UnknownParameterException;
+
+/**
+ * Holds the semantic actions of an interpreter class, resolved once for each class and shared by the analyzers of all its instances.<br>
+ * The actions are read from the generated dispatcher of the class (see {@link InterpreterDispatcher}) or from the annotations,
+ * validated, and bound to method handles that take the interpreter as first argument, so that an analyzer only binds its
+ * interpreters to them. The production tables of the analyzers whose root interpreter has this class are cached too,
+ * for each grammar and for each layout of the sub-interpreters.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class InterpreterMetadata {
+
+	private static final ClassValue<InterpreterMetadata> METADATA = new ClassValue<InterpreterMetadata>() {
+		@Override
+		protected InterpreterMetadata computeValue(Class<?> type) {
+			return new InterpreterMetadata(type);
+		}
+	};
+
+	/**
+	 * Gets the metadata of an interpreter class, resolving it at the first request
+	 * 
+	 * @param interpreterClass
+	 *            the interpreter class
+	 * @return the metadata of the class
+	 */
+	static InterpreterMetadata of(Class<?> interpreterClass) {
+		return METADATA.get(interpreterClass);
+	}
+
+	/**
+	 * A semantic action of the class, with the rules and the terminal types qualified by the language of the class
+	 */
+	final class Action {
+		final DispatchedAction descriptor;
+		// the number of the action in the dispatcher
+		final int index;
+		final boolean terminal;
+		final String[] terminalTypes;
+		final String[] ruleHeads;
+		final String[][] ruleProductions;
+
+		// the types of the parameters, with the primitive ones replaced by their wrappers
+		private final Class<?>[] parameterTypes;
+		private final boolean[] primitive;
+		final int arity;
+		final Class<?> varArgsType;
+		// the parameters of type Lazy, the last one standing for all the variable arguments, or null if no parameter is lazy
+		final boolean[] lazyParameters;
+		// the parameters that take the futures of the asynchronous actions as they are, instead of their results, or null if no parameter does
+		final boolean[] futureParameters;
+		// true if the action fits the primitive lane, with the tags of its parameters and of its result
+		final boolean primitiveLane;
+		final PrimitiveLanes.Tag[] laneParameters;
+		final PrimitiveLanes.Tag laneResult;
+		// the method taking the interpreter and the arguments in an array, or null to use the dispatcher or the reflection
+		private final MethodHandle invoker;
+		// the method adapted to the primitive lane, taking the interpreter first, when the dispatcher is not used
+		private final MethodHandle lane;
+
+		Action(DispatchedAction descriptor, int index) {
+			this.descriptor = descriptor;
+			this.index = index;
+			this.terminal = descriptor.terminalTypes.length > 0;
+
+			terminalTypes = new String[descriptor.terminalTypes.length];
+			for (int i = 0; i < terminalTypes.length; i++)
+				terminalTypes[i] = qualify(descriptor.terminalTypes[i]);
+
+			ruleHeads = new String[descriptor.ruleHeads.length];
+			ruleProductions = new String[ruleHeads.length][];
+			for (int rule = 0; rule < ruleHeads.length; rule++) {
+				ruleHeads[rule] = qualify(descriptor.ruleHeads[rule]);
+
+				String[] originalProd = descriptor.ruleProductions[rule];
+				ruleProductions[rule] = new String[originalProd.length];
+				for (int i = 0; i < originalProd.length; i++) {
+					if (!originalProd[i].contains(".") && originalProd[i].startsWith(EditableParser.TERMINAL_PREFIX))
+						ruleProductions[rule][i] = "$" + languagePrefix + originalProd[i].substring(1);
+					else
+						ruleProductions[rule][i] = qualify(originalProd[i]);
+				}
+			}
+
+			Class<?>[] parameterTypes = descriptor.parameterTypes.clone();
+			this.arity = parameterTypes.length;
+			this.varArgsType = descriptor.varArgs ? parameterTypes[arity - 1].getComponentType() : null;
+			this.primitive = new boolean[arity];
+			boolean[] lazyParameters = new boolean[arity];
+			boolean[] futureParameters = new boolean[arity];
+			boolean lazy = false, future = false;
+			for (int i = 0; i < arity; i++) {
+				Class<?> type = varArgsType != null && i == arity - 1 ? varArgsType : parameterTypes[i];
+				lazyParameters[i] = type == Lazy.class;
+				lazy |= lazyParameters[i];
+				futureParameters[i] = type != Object.class && type.isAssignableFrom(CompletableFuture.class);
+				future |= futureParameters[i];
+				primitive[i] = parameterTypes[i].isPrimitive();
+				if (primitive[i])
+					parameterTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+			}
+			this.parameterTypes = parameterTypes;
+			this.lazyParameters = lazy && !terminal ? lazyParameters : null;
+			this.futureParameters = future && !terminal ? futureParameters : null;
+
+			MethodHandle invoker = null, lane = null;
+			if (dispatcher == null) {
+				Method method = method();
+				try {
+					invoker = MethodHandles.lookup().unreflect(method).asFixedArity();
+					if (Modifier.isStatic(method.getModifiers()))
+						invoker = MethodHandles.dropArguments(invoker, 0, Object.class);
+					else
+						invoker = invoker.asType(invoker.type().changeParameterType(0, Object.class));
+					if (varArgsType == null)
+						lane = PrimitiveLanes.adapt(invoker, terminal);
+					invoker = invoker.asSpreader(Object[].class, arity).asType(INVOKER_TYPE);
+				} catch (IllegalAccessException e) {
+					invoker = null;
+				}
+				this.primitiveLane = lane != null;
+			}
+			else
+				this.primitiveLane = varArgsType == null && PrimitiveLanes.fits(descriptor.returnType, descriptor.parameterTypes, terminal);
+			this.invoker = invoker;
+			this.lane = lane;
+			this.laneParameters = primitiveLane ? PrimitiveLanes.parameterTags(descriptor.parameterTypes) : null;
+			this.laneResult = primitiveLane ? PrimitiveLanes.tag(descriptor.returnType) : null;
+		}
+
+		/**
+		 * Gets the method of the action, which is looked up by reflection when the dispatcher is used
+		 * 
+		 * @return the accessible method of the action
+		 */
+		Method method() {
+			Method method = descriptor.method(interpreterClass);
+			// accessibility is set once, since the analysis can be run concurrently
+			if (!method.isAccessible())
+				method.setAccessible(true);
+			return method;
+		}
+
+		/**
+		 * Tells if an argument is passed to a lazy parameter
+		 * 
+		 * @param position
+		 *            the position of the argument
+		 * @return true if the parameter of the argument has type Lazy
+		 */
+		boolean lazy(int position) {
+			if (lazyParameters == null)
+				return false;
+			if (varArgsType != null)
+				return lazyParameters[Math.min(position, arity - 1)];
+			return position < arity && lazyParameters[position];
+		}
+
+		/**
+		 * Tells if an argument is passed as it is to a parameter that takes a future, such as {@link CompletableFuture} or {@link java.util.concurrent.Future}.
+		 * The futures returned by the asynchronous actions are awaited before being passed to the other parameters.
+		 * 
+		 * @param position
+		 *            the position of the argument
+		 * @return true if the parameter of the argument takes the futures
+		 */
+		boolean future(int position) {
+			if (futureParameters == null)
+				return false;
+			if (varArgsType != null)
+				return futureParameters[Math.min(position, arity - 1)];
+			return position < arity && futureParameters[position];
+		}
+
+		Object invoke(Interpreter interpreter, Object[] args)
+				throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+			// the arguments that need a widening conversion, or that do not fit the parameters, are left to the reflection
+			if ((dispatcher == null && invoker == null) || !fits(args))
+				return method().invoke(interpreter, args);
+
+			try {
+				return dispatcher != null ? dispatcher.invoke(interpreter, index, args) : (Object) invoker.invokeExact((Object) interpreter, args);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+
+		long invokePrimitive(Interpreter interpreter, SyntaxTree tree) throws Throwable {
+			return dispatcher != null ? dispatcher.invokePrimitive(interpreter, index, tree) : PrimitiveLanes.invoke(lane, interpreter, tree);
+		}
+
+		long invokePrimitive(Interpreter interpreter, long[] bits, int offset) throws Throwable {
+			return dispatcher != null ? dispatcher.invokePrimitive(interpreter, index, bits, offset)
+					: PrimitiveLanes.invoke(lane, interpreter, bits, offset);
+		}
+
+		private boolean fits(Object[] args) {
+			if (args.length != arity)
+				return false;
+			for (int i = 0; i < arity; i++)
+				if (args[i] == null ? primitive[i] : !parameterTypes[i].isInstance(args[i]))
+					return false;
+			return true;
+		}
+	}
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+	final Class<?> interpreterClass;
+	// the generated dispatcher of the class, or null to call the actions through their methods
+	final InterpreterDispatcher dispatcher;
+	final String languagePrefix;
+	final Action[] actions;
+	// the fields that hold the sub-interpreters, read by reflection when the dispatcher can not read them
+	private final Field[] fields;
+	// the production tables, for each grammar and layout of the sub-interpreters
+	private final Map<Grammar, Map<List<Object>, int[]>> tables = new WeakHashMap<>();
+
+	private InterpreterMetadata(Class<?> interpreterClass) {
+		this.interpreterClass = interpreterClass;
+		this.dispatcher = dispatcher(interpreterClass);
+
+		String language;
+		DispatchedAction[] descriptors;
+		if (dispatcher != null) {
+			language = dispatcher.language();
+			descriptors = dispatcher.actions();
+		} else {
+			Language languageAnnotation = interpreterClass.getAnnotation(Language.class);
+			language = languageAnnotation == null ? null : languageAnnotation.value();
+
+			List<DispatchedAction> described = new ArrayList<>();
+			for (Method m : interpreterClass.getDeclaredMethods())
+				if (m.getAnnotationsByType(TerminalToken.class).length > 0 || m.getAnnotationsByType(NonTerminalToken.class).length > 0)
+					described.add(DispatchedAction.of(m));
+			descriptors = described.toArray(new DispatchedAction[described.size()]);
+		}
+		this.languagePrefix = language == null ? "" : language + ".";
+
+		this.actions = new Action[descriptors.length];
+		for (int i = 0; i < descriptors.length; i++) {
+			DispatchedAction descriptor = descriptors[i];
+			if (descriptor.terminalTypes.length > 0 && descriptor.ruleHeads.length > 0)
+				throw new MutuallyExclusiveInterpretationsException(descriptor.method(interpreterClass));
+			if (descriptor.terminalTypes.length > 0)
+				validateTerminalMethod(descriptor);
+			actions[i] = new Action(descriptor, i);
+		}
+
+		List<Field> fields = new ArrayList<>();
+		for (Field f : interpreterClass.getDeclaredFields())
+			if (Interpreter.class.isAssignableFrom(f.getType())) {
+				// accessibility is set once, since the analyzers can be created concurrently
+				f.setAccessible(true);
+				fields.add(f);
+			}
+		this.fields = fields.toArray(new Field[fields.size()]);
+	}
+
+	// qualifies a symbol with the language of the class, unless it is already qualified
+	private String qualify(String symbol) {
+		return symbol.contains(".") ? symbol : languagePrefix + symbol;
+	}
+
+	/**
+	 * Loads the dispatcher generated for an interpreter class (see {@link InterpreterDispatcher})
+	 * 
+	 * @param interpreterClass
+	 *            the interpreter class
+	 * @return a new instance of the dispatcher, or null if no dispatcher was generated for the class
+	 */
+	private static InterpreterDispatcher dispatcher(Class<?> interpreterClass) {
+		try {
+			Class<?> type = Class.forName(interpreterClass.getName() + InterpreterDispatcher.SUFFIX, true,
+					interpreterClass.getClassLoader());
+			if (!InterpreterDispatcher.class.isAssignableFrom(type))
+				return null;
+			InterpreterDispatcher dispatcher = (InterpreterDispatcher) type.getDeclaredConstructor().newInstance();
+			return dispatcher.interpreterClass() == interpreterClass ? dispatcher : null;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private void validateTerminalMethod(DispatchedAction action) {
+		Class<?>[] parameters = action.parameterTypes;
+
+		if (parameters.length > 0) {
+			boolean found = false; // indicates if the SyntaxTree argument has already been found
+			for (int i = 0; i < parameters.length; i++) {
+				if (parameters[i].equals(SyntaxTree.class)) {
+					if (found)
+						throw unknownParameter(action, i);
+					found = true;
+				} else {
+					throw unknownParameter(action, i);
+				}
+			}
+		}
+	}
+
+	private UnknownParameterException unknownParameter(DispatchedAction action, int parameter) {
+		Method method = action.method(interpreterClass);
+		return new UnknownParameterException(method, method.getParameters()[parameter]);
+	}
+
+	/**
+	 * Gets the sub-interpreters of an interpreter of this class
+	 * 
+	 * @param interpreter
+	 *            the interpreter
+	 * @return the interpreters held by the fields of the interpreter
+	 */
+	List<Interpreter> interpreters(Interpreter interpreter) {
+		Interpreter[] interpreters = dispatcher == null ? null : dispatcher.interpreters(interpreter);
+		if (interpreters != null)
+			return Arrays.asList(interpreters);
+
+		List<Interpreter> sons = new ArrayList<>(fields.length);
+		for (Field f : fields) {
+			try {
+				sons.add((Interpreter) f.get(interpreter));
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+		return sons;
+	}
+
+	/**
+	 * Gets the production table of a grammar, cached for an analyzer whose root interpreter has this class
+	 * 
+	 * @param grammar
+	 *            the grammar
+	 * @param layout
+	 *            the classes of the interpreters of the analyzer, with their priorities, in order of visit
+	 * @return the numbers of the interpretations of the productions, or null if the table was not cached yet
+	 */
+	synchronized int[] table(Grammar grammar, List<Object> layout) {
+		Map<List<Object>, int[]> tables = this.tables.get(grammar);
+		return tables == null ? null : tables.get(layout);
+	}
+
+	/**
+	 * Caches the production table of a grammar, for an analyzer whose root interpreter has this class
+	 * 
+	 * @param grammar
+	 *            the grammar
+	 * @param layout
+	 *            the classes of the interpreters of the analyzer, with their priorities, in order of visit
+	 * @param table
+	 *            the numbers of the interpretations of the productions, or the negative codes of the productions without interpretation
+	 */
+	synchronized void table(Grammar grammar, List<Object> layout, int[] table) {
+		Map<List<Object>, int[]> tables = this.tables.get(grammar);
+		if (tables == null)
+			this.tables.put(grammar, tables = new HashMap<>());
+		tables.put(layout, table);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic;
+
+import jointyc.analysis.semantic.annotation.NonTerminalToken;
+import jointyc.analysis.semantic.exception.SemanticException;
+
+/**
+ * Holds the result of a subtree that is evaluated only if and when a semantic action asks for it.<br>
+ * <br>
+ * A parameter of type Lazy of a {@link NonTerminalToken} method takes a whole child of the node, instead of its results:
+ * when the analyzer reaches a child whose results would be passed to a lazy parameter, it passes a Lazy in their place, without visiting the child.
+ * The terminal tokens without a semantic action are skipped, as usual, since they give no result.
+ * For instance, the action of the rule <code>cond = expr $then stmt $else stmt</code> could be:<br>
+ * <code>Object cond(Boolean test, Lazy&lt;Object&gt; then, Lazy&lt;Object&gt; otherwise){ return test ? then.get() : otherwise.get(); }</code><br>
+ * <br>
+ * The subtrees that contain no semantic action (see {@link SemanticAnalyzer}) are skipped too, so that the lazy arguments take the same positions
+ * of the eager ones. A subtree that contains some semantic action is not evaluated to know if it gives a result, so it always takes a lazy argument,
+ * even if its actions give no result, while the eager evaluation would pass no argument for it.<br>
+ * <br>
+ * The value of a Lazy is the first result of its subtree, or null if the subtree gives no result.
+ * The errors and the terminations of the subtree are raised by the action that asks for the value, and then by the analyzer,
+ * as if the subtree had been evaluated eagerly. When the tree is reduced while it is parsed, the children are evaluated by the parser anyway,
+ * and the lazy parameters only defer the errors and the terminations of their subtrees.
+ * 
+ * @param <T> the type of the result of the subtree
+ *
+ * @author Salvatore Giamp
+ *
+ */
+public final class Lazy<T> {
+
+	// evaluates the subtree of a lazy argument, throwing a Failure without error for the terminations
+	interface Evaluator {
+		Object evaluate() throws SemanticException;
+	}
+
+	/*
+	 * Carries the error, or the termination, of a lazy subtree out of the semantic action that asked for its value.
+	 * The analyzer raises the error of the subtree in place of the exception of the action.
+	 */
+	static final class Failure extends RuntimeException {
+		private static final long serialVersionUID = -3150722407498733127L;
+		final SemanticException error;
+
+		Failure(SemanticException error) {
+			super(error == null ? "the analysis was terminated by a lazy argument" : "a lazy argument failed", error, false, false);
+			this.error = error;
+		}
+	}
+
+	private Evaluator evaluator;
+	private Object value;
+	private Failure failure;
+
+	Lazy(Evaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Gets the value of the subtree, evaluating it at the first request
+	 * @return the first result of the subtree, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public T get() {
+		if (failure != null)
+			throw failure;
+		if (evaluator != null) {
+			try {
+				value = evaluator.evaluate();
+			} catch (SemanticException e) {
+				throw failure = new Failure(e);
+			} catch (Failure e) {
+				throw failure = e;
+			}
+			evaluator = null;
+		}
+		return (T) value;
+	}
+
+	/**
+	 * Tells if the subtree was already evaluated
+	 * @return true if the value was already asked for
+	 */
+	public boolean isEvaluated() {
+		return evaluator == null || failure != null;
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jointyc.analysis.parser.SyntaxIterator;
+import jointyc.analysis.parser.SyntaxTree;
+
+/**
+ * Holds the results of the pure semantic actions (see {@link jointyc.analysis.semantic.annotation.Pure}), indexed by the structure of the interpreted subtrees.<br>
+ * The structures are hash-consed: each distinct structure, made by the type and the production of a node and by the structures of its children,
+ * or by the type and the token of a terminal node, is numbered once, so that the structure of a node is compared by the numbers of its children.
+ * The numbers are never reused, so that the structures and the results can be evicted independently, with the LRU policy (Least Recently Used).<br>
+ * The memoization can be shared by concurrent analyses.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class Memoization {
+
+	// the structure of a node
+	private static final class Structure {
+		final String type;
+		final int production;
+		final String token;
+		final long[] children;
+		final int hash;
+
+		Structure(String type, int production, String token, long[] children) {
+			this.type = type;
+			this.production = production;
+			this.token = token;
+			this.children = children;
+			int hash = type.hashCode();
+			hash = hash * 31 + production;
+			hash = hash * 31 + (token == null ? 0 : token.hashCode());
+			this.hash = hash * 31 + Arrays.hashCode(children);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Structure))
+				return false;
+			Structure other = (Structure) obj;
+			return hash == other.hash && production == other.production && type.equals(other.type)
+					&& (token == null ? other.token == null : token.equals(other.token)) && Arrays.equals(children, other.children);
+		}
+	}
+
+	/**
+	 * The results of a pure subtree, as they are held by the operand stack
+	 */
+	static final class Entry {
+		final Object[] operands;
+		final long[] bits;
+
+		Entry(Object[] operands, long[] bits) {
+			this.operands = operands;
+			this.bits = bits;
+		}
+	}
+
+	private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = -4014393426582307651L;
+		private final int capacity;
+
+		LruMap(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	private static final long[] NO_CHILDREN = new long[0];
+
+	/**
+	 * The max number of the structures held for each result, since the subtree of a result is made by many nodes
+	 */
+	static final int STRUCTURES_PER_RESULT = 16;
+
+	private final LruMap<Structure, Long> structures;
+	private final LruMap<Long, Entry> results;
+	private long nextId;
+
+	/**
+	 * Creates an empty memoization
+	 * @param capacity the max number of the results held
+	 */
+	Memoization(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity <= 0");
+		this.structures = new LruMap<>((int) Math.min(Integer.MAX_VALUE, (long) capacity * STRUCTURES_PER_RESULT));
+		this.results = new LruMap<>(capacity);
+	}
+
+	private synchronized long id(String type, int production, String token, long[] children) {
+		Structure structure = new Structure(type, production, token, children);
+		Long id = structures.get(structure);
+		if (id == null)
+			structures.put(structure, id = nextId++);
+		return id;
+	}
+
+	/**
+	 * Gets the results of a subtree
+	 * @param id the number of the structure of the subtree
+	 * @return the results, or null if they are not held
+	 */
+	synchronized Entry get(long id) {
+		return results.get(id);
+	}
+
+	/**
+	 * Holds the results of a subtree
+	 * @param id the number of the structure of the subtree
+	 * @param operands the operand stack
+	 * @param bits the primitive lane of the operand stack
+	 * @param from the first result of the subtree in the stack
+	 * @param to the end of the results of the subtree in the stack
+	 */
+	synchronized void put(long id, Object[] operands, long[] bits, int from, int to) {
+		results.put(id, new Entry(Arrays.copyOfRange(operands, from, to), Arrays.copyOfRange(bits, from, to)));
+	}
+
+	/**
+	 * Creates a session for an analysis, that numbers the structures of the nodes of its syntax tree
+	 * @return the new session
+	 */
+	Session session() {
+		return new Session();
+	}
+
+	/**
+	 * Numbers the structures of the nodes of a syntax tree, remembering the numbers of the visited non-terminal nodes,
+	 * so that every node is examined once, even if it is nested into many pure subtrees.
+	 */
+	final class Session {
+		//the numbers of the non-terminal nodes, indexed by their type, production and position
+		private final Map<Structure, Long> ids = new ConcurrentHashMap<>();
+
+		private Session() {
+		}
+
+		Memoization memoization() {
+			return Memoization.this;
+		}
+
+		private Structure position(SyntaxTree tree) {
+			return new Structure(tree.type(), tree.production(), null, new long[] { tree.start(), tree.end() });
+		}
+
+		/**
+		 * Gets the number of the structure of a subtree
+		 * @param tree the root of the subtree
+		 * @return the number of the structure
+		 */
+		long id(SyntaxTree tree) {
+			if (tree.terminal())
+				return Memoization.this.id(tree.type(), -1, tree.token().toString(), NO_CHILDREN);
+			Long id = ids.get(position(tree));
+			if (id != null)
+				return id;
+
+			// visits the subtree in postorder, skipping the nodes already numbered
+			Deque<SyntaxTree> trees = new ArrayDeque<>();
+			Deque<SyntaxIterator> iterators = new ArrayDeque<>();
+			Deque<long[]> children = new ArrayDeque<>();
+			Deque<int[]> counts = new ArrayDeque<>();
+			trees.push(tree);
+			iterators.push(tree.iterator());
+			children.push(new long[tree.nexts()]);
+			counts.push(new int[1]);
+
+			while (true) {
+				long child;
+				if (iterators.peek().hasNext()) {
+					SyntaxTree next = iterators.peek().next();
+					if (next.terminal())
+						child = Memoization.this.id(next.type(), -1, next.token().toString(), NO_CHILDREN);
+					else if ((id = ids.get(position(next))) != null)
+						child = id;
+					else {
+						trees.push(next);
+						iterators.push(next.iterator());
+						children.push(new long[next.nexts()]);
+						counts.push(new int[1]);
+						continue;
+					}
+				} else {
+					SyntaxTree node = trees.pop();
+					iterators.pop();
+					counts.pop();
+					child = Memoization.this.id(node.type(), node.production(), null, children.pop());
+					ids.put(position(node), child);
+					if (trees.isEmpty())
+						return child;
+				}
+				children.peek()[counts.peek()[0]++] = child;
+			}
+		}
+	}
+}
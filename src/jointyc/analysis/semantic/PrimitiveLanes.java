@@ -0,0 +1,231 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+import jointyc.analysis.parser.SyntaxTree;
+
+/**
+ * Defines the primitive lane of the operand stack of the {@link SemanticAnalyzer}.<br>
+ * The primitive results of the semantic actions are kept as raw bits in a <code>long</code> slot, marked by the tag of their type,
+ * and passed to the actions that take primitive parameters without being boxed. The values are boxed only when they
+ * are passed to an action that takes an object, or when they are returned by the analysis.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class PrimitiveLanes {
+
+	/**
+	 * The max number of the primitive parameters of the actions that use the primitive lane
+	 */
+	static final int MAX_ARITY = 4;
+
+	/**
+	 * Marks an operand whose value is held by the primitive lane
+	 */
+	static final class Tag {
+		final Class<?> type;
+
+		private Tag(Class<?> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Boxes a value of this type
+		 * @param bits the raw bits of the value
+		 * @return the boxed value
+		 */
+		Object box(long bits) {
+			if (type == int.class)
+				return (int) bits;
+			if (type == long.class)
+				return bits;
+			if (type == double.class)
+				return Double.longBitsToDouble(bits);
+			if (type == boolean.class)
+				return bits != 0;
+			if (type == float.class)
+				return Float.intBitsToFloat((int) bits);
+			if (type == char.class)
+				return (char) bits;
+			if (type == short.class)
+				return (short) bits;
+			return (byte) bits;
+		}
+
+		@Override
+		public String toString() {
+			return type.getName();
+		}
+	}
+
+	private static final Class<?>[] TYPES = { int.class, long.class, double.class, boolean.class, float.class, char.class, short.class, byte.class };
+	private static final Tag[] TAGS = new Tag[TYPES.length];
+	static {
+		for (int i = 0; i < TYPES.length; i++)
+			TAGS[i] = new Tag(TYPES[i]);
+	}
+
+	private static final MethodHandle DOUBLE_TO_BITS, BITS_TO_DOUBLE, FLOAT_TO_BITS, BITS_TO_FLOAT;
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			DOUBLE_TO_BITS = lookup.findStatic(Double.class, "doubleToRawLongBits", MethodType.methodType(long.class, double.class));
+			BITS_TO_DOUBLE = lookup.findStatic(Double.class, "longBitsToDouble", MethodType.methodType(double.class, long.class));
+			FLOAT_TO_BITS = lookup.findStatic(Float.class, "floatToRawIntBits", MethodType.methodType(int.class, float.class));
+			BITS_TO_FLOAT = lookup.findStatic(Float.class, "intBitsToFloat", MethodType.methodType(float.class, int.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private PrimitiveLanes() {
+	}
+
+	/**
+	 * Gets the tag of a primitive type
+	 * @param type the primitive type
+	 * @return the tag of the type, or null if the type is not primitive or is void
+	 */
+	static Tag tag(Class<?> type) {
+		for (int i = 0; i < TYPES.length; i++)
+			if (TYPES[i] == type)
+				return TAGS[i];
+		return null;
+	}
+
+	/**
+	 * Adapts a semantic action to the primitive lane. The adapted method takes the raw bits of the primitive parameters,
+	 * or the syntax tree for the terminal actions, and returns the raw bits of the result.
+	 * The interpreter is kept as first parameter of the adapted method.
+	 * @param method the method of the action, taking its interpreter as first parameter
+	 * @param terminal true if the action interprets a terminal token
+	 * @return the adapted method, or null if the action does not fit the primitive lane
+	 */
+	static MethodHandle adapt(MethodHandle method, boolean terminal) {
+		MethodType type = method.type().dropParameterTypes(0, 1);
+		if (type.parameterCount() > MAX_ARITY || !fits(type.returnType(), type.parameterArray(), terminal))
+			return null;
+
+		MethodHandle adapted = MethodHandles.filterReturnValue(method, toBits(type.returnType()));
+		Class<?>[] parameters = new Class<?>[type.parameterCount() + 1];
+		parameters[0] = Object.class;
+		for (int i = 1; i < parameters.length; i++) {
+			Class<?> parameter = type.parameterType(i - 1);
+			if (terminal)
+				parameters[i] = SyntaxTree.class;
+			else {
+				adapted = MethodHandles.filterArguments(adapted, i, fromBits(parameter));
+				parameters[i] = long.class;
+			}
+		}
+		return adapted.asType(MethodType.methodType(long.class, parameters));
+	}
+
+	/**
+	 * Tells if a semantic action fits the primitive lane, that is if it returns a primitive value, and if it takes only primitive values
+	 * or, for the terminal actions, only the syntax tree
+	 * @param returnType the return type of the action
+	 * @param parameters the types of the parameters of the action
+	 * @param terminal true if the action interprets a terminal token
+	 * @return true if the action fits the primitive lane
+	 */
+	static boolean fits(Class<?> returnType, Class<?>[] parameters, boolean terminal) {
+		if (tag(returnType) == null)
+			return false;
+		for (Class<?> parameter : parameters)
+			if (terminal ? parameter != SyntaxTree.class : tag(parameter) == null)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Gets the tags of the parameters of an action adapted to the primitive lane
+	 * @param parameters the types of the parameters of the action
+	 * @return the tags of the parameters, null for the syntax tree of the terminal actions
+	 */
+	static Tag[] parameterTags(Class<?>[] parameters) {
+		Tag[] tags = new Tag[parameters.length];
+		for (int i = 0; i < tags.length; i++)
+			tags[i] = tag(parameters[i]);
+		return tags;
+	}
+
+	// converts a primitive value to its raw bits
+	private static MethodHandle toBits(Class<?> type) {
+		if (type == double.class)
+			return DOUBLE_TO_BITS;
+		if (type == float.class)
+			return MethodHandles.explicitCastArguments(FLOAT_TO_BITS, MethodType.methodType(long.class, float.class));
+		return MethodHandles.explicitCastArguments(MethodHandles.identity(type), MethodType.methodType(long.class, type));
+	}
+
+	// converts the raw bits to a primitive value
+	private static MethodHandle fromBits(Class<?> type) {
+		if (type == double.class)
+			return BITS_TO_DOUBLE;
+		if (type == float.class)
+			return MethodHandles.explicitCastArguments(BITS_TO_FLOAT, MethodType.methodType(float.class, long.class));
+		return MethodHandles.explicitCastArguments(MethodHandles.identity(type), MethodType.methodType(type, long.class));
+	}
+
+	/**
+	 * Invokes a method adapted to the primitive lane, with the raw bits of the parameters
+	 * @param method the adapted method
+	 * @param interpreter the interpreter of the action
+	 * @param bits the array holding the raw bits of the parameters
+	 * @param offset the index of the first parameter in the array
+	 * @return the raw bits of the result
+	 * @throws Throwable if the action throws an exception
+	 */
+	static long invoke(MethodHandle method, Object interpreter, long[] bits, int offset) throws Throwable {
+		switch (method.type().parameterCount() - 1) {
+		case 0:
+			return (long) method.invokeExact(interpreter);
+		case 1:
+			return (long) method.invokeExact(interpreter, bits[offset]);
+		case 2:
+			return (long) method.invokeExact(interpreter, bits[offset], bits[offset + 1]);
+		case 3:
+			return (long) method.invokeExact(interpreter, bits[offset], bits[offset + 1], bits[offset + 2]);
+		case 4:
+			return (long) method.invokeExact(interpreter, bits[offset], bits[offset + 1], bits[offset + 2], bits[offset + 3]);
+		default:
+			throw new IllegalArgumentException("arity " + (method.type().parameterCount() - 1) + " > " + MAX_ARITY + ": " + Arrays.toString(method.type().parameterArray()));
+		}
+	}
+
+	/**
+	 * Invokes a terminal action adapted to the primitive lane
+	 * @param method the adapted method
+	 * @param interpreter the interpreter of the action
+	 * @param tree the terminal node
+	 * @return the raw bits of the result
+	 * @throws Throwable if the action throws an exception
+	 */
+	static long invoke(MethodHandle method, Object interpreter, SyntaxTree tree) throws Throwable {
+		if (method.type().parameterCount() == 1)
+			return (long) method.invokeExact(interpreter);
+		return (long) method.invokeExact(interpreter, tree);
+	}
+}
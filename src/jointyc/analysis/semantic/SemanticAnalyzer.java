@@ -20,41 +20,43 @@ package jointyc.analysis.semantic;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Repeatable;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import javax.lang.model.type.PrimitiveType;
 
 import jointyc.analysis.lexer.Lexer;
 import jointyc.analysis.parser.EditableParser;
+import jointyc.analysis.parser.Grammar;
 import jointyc.analysis.parser.Parser;
 import jointyc.analysis.parser.StandardParser;
 import jointyc.analysis.parser.SyntaxIterator;
+import jointyc.analysis.parser.SyntaxReducer;
 import jointyc.analysis.parser.SyntaxTree;
-import jointyc.analysis.semantic.annotation.Language;
-import jointyc.analysis.semantic.annotation.NoBufferClear;
-import jointyc.analysis.semantic.annotation.NonTerminalToken;
+import jointyc.analysis.parser.exception.UnexpectedSymbolException;
 import jointyc.analysis.semantic.annotation.NonTerminalTokens;
-import jointyc.analysis.semantic.annotation.TerminalToken;
+import jointyc.analysis.semantic.annotation.ParallelSubtrees;
+import jointyc.analysis.semantic.annotation.Pure;
 import jointyc.analysis.semantic.annotation.TerminalTokens;
 import jointyc.analysis.semantic.exception.AnnotationException;
 import jointyc.analysis.semantic.exception.AxiomBufferClearException;
-import jointyc.analysis.semantic.exception.MutuallyExclusiveInterpretationsException;
 import jointyc.analysis.semantic.exception.NonTerminalReplicationException;
 import jointyc.analysis.semantic.exception.SemanticException;
 import jointyc.analysis.semantic.exception.TerminalReplicationException;
-import jointyc.analysis.semantic.exception.UnknownParameterException;
 
 /**
  * Implements a visiting machinery of the syntax tree to apply semantic actions,
@@ -69,60 +71,289 @@ public class SemanticAnalyzer {
 		TERMINATE
 	}
 
-	private static class TreeNode {
-		SyntaxTree tree;
-		boolean expanded = false;
-		TreeNode father;
-		ArrayList<Object> results = new ArrayList<>();
+	/**
+	 * Defines how long the results of the pure semantic actions are held (see {@link Pure})
+	 */
+	public static enum MemoScope {
+		/**
+		 * The results are reused only inside the analysis of a syntax tree
+		 */
+		ANALYSIS,
+		/**
+		 * The results are reused by all the analyses of the analyzer
+		 */
+		ANALYZER
+	}
+
+	/**
+	 * The default max number of the results of the pure semantic actions held by the analyzer
+	 */
+	public static final int DEFAULT_MEMO_CAPACITY = 4096;
+
+	/*
+	 * The state of an analysis: the operand stack, which holds the results of the visited nodes in postfix order,
+	 * and the frames of the open non-terminal nodes, each one marking the base of the results of its children.
+	 * The primitive results are held by the primitive lane, as raw bits, and their operands hold the tags of their types.
+	 * The frames of the nodes whose actions take lazy arguments hold their interpretations, to defer the children of the lazy arguments.
+	 * The arrays grow as needed and are reused for all the nodes, along with the arrays of the arguments of each arity.
+	 */
+	private static class Evaluation {
+		Object[] operands = new Object[16];
+		long[] bits = new long[16];
+		int size;
+
+		SyntaxTree[] trees = new SyntaxTree[16];
+		SyntaxIterator[] children = new SyntaxIterator[16];
+		int[] bases = new int[16];
+		long[] memos = new long[16];
+		Interpretation[] lazies = new Interpretation[16];
+		int depth;
+
+		private Object[][] arguments = new Object[8][];
+
+		void push(Object result) {
+			if (size == operands.length) {
+				operands = Arrays.copyOf(operands, size * 2);
+				bits = Arrays.copyOf(bits, size * 2);
+			}
+			operands[size++] = result;
+		}
+
+		void push(PrimitiveLanes.Tag tag, long bits) {
+			push(tag);
+			this.bits[size - 1] = bits;
+		}
+
+		// gets an operand, boxing the primitive values
+		Object value(int index) {
+			Object operand = operands[index];
+			return operand instanceof PrimitiveLanes.Tag ? ((PrimitiveLanes.Tag) operand).box(bits[index]) : operand;
+		}
+
+		Object[] values() {
+			Object[] values = new Object[size];
+			for (int i = 0; i < size; i++)
+				values[i] = value(i);
+			return values;
+		}
+
+		void truncate(int base) {
+			Arrays.fill(operands, base, size, null);
+			size = base;
+		}
+
+		void push(Memoization.Entry entry) {
+			for (int i = 0; i < entry.operands.length; i++)
+				push(entry.operands[i]);
+			System.arraycopy(entry.bits, 0, bits, size - entry.bits.length, entry.bits.length);
+		}
+
+		// opens a node, with the number of its structure if its results must be memoized, or -1, and its interpretation if it takes lazy arguments
+		void open(SyntaxTree tree, long memo, Interpretation lazy) {
+			if (depth == trees.length) {
+				trees = Arrays.copyOf(trees, depth * 2);
+				children = Arrays.copyOf(children, depth * 2);
+				bases = Arrays.copyOf(bases, depth * 2);
+				memos = Arrays.copyOf(memos, depth * 2);
+				lazies = Arrays.copyOf(lazies, depth * 2);
+			}
+			trees[depth] = tree;
+			children[depth] = tree.iterator();
+			memos[depth] = memo;
+			lazies[depth] = lazy;
+			bases[depth++] = size;
+		}
+
+		void close() {
+			depth--;
+			trees[depth] = null;
+			children[depth] = null;
+			lazies[depth] = null;
+		}
+
+		Object[] arguments(int arity) {
+			if (arity >= arguments.length)
+				arguments = Arrays.copyOf(arguments, arity + 1);
+			Object[] arguments = this.arguments[arity];
+			if (arguments == null)
+				this.arguments[arity] = arguments = new Object[arity];
+			return arguments;
+		}
+	}
+
+	/*
+	 * The results of a node reduced by a streaming analysis, or evaluated by a concurrent task. The errors and the terminations
+	 * are carried up to the root, instead of being raised by the reduction, because the node could belong to a production
+	 * discarded by the parser, or a previous sibling could fail first.
+	 */
+	private static class Results {
+		static final Results EMPTY = new Results(new Object[0], null, false);
+		static final Results TERMINATED = new Results(new Object[0], null, true);
+		// the results of a terminal token without semantic action
+		static final Results SKIPPED = new Results(new Object[0], null, false);
+
+		final Object[] values;
+		final SemanticException error;
+		final boolean terminated;
+
+		Results(Object[] values, SemanticException error, boolean terminated) {
+			this.values = values;
+			this.error = error;
+			this.terminated = terminated;
+		}
+	}
+
+	// applies the semantic actions to the nodes reduced by a streaming analysis, or to the children of a concurrent task
+	private class ActionReducer implements SyntaxReducer<Results> {
+		private final Evaluation evaluation = new Evaluation();
+		// the last reduced node, that is the root when the parsing ends
+		private SyntaxTree last;
 
-		TreeNode(SyntaxTree tree, TreeNode father) {
+		@Override
+		public Results terminal(SyntaxTree token) {
+			last = token;
+			if (!terminalMap.containsKey(token.type()))
+				return Results.SKIPPED;
+			try {
+				if (!invokeTerminalMethod(token, evaluation))
+					return Results.TERMINATED;
+				return evaluation.size == 0 ? Results.EMPTY : new Results(evaluation.values(), null, false);
+			} catch (SemanticException e) {
+				return new Results(null, e, false);
+			} finally {
+				evaluation.truncate(0);
+			}
+		}
+
+		@Override
+		public Results nonTerminal(SyntaxTree node, List<Results> children) {
+			last = node;
+			Interpretation interpretation = lazy ? interpretation(node) : null;
+			try {
+				for (Results child : children) {
+					// the children of the lazy arguments were already evaluated, but their errors are deferred too,
+					// while the children that gave no result take no argument, as in the eager evaluation
+					if (child != Results.SKIPPED && (child.error != null || child.terminated || child.values.length > 0)
+							&& interpretation != null && interpretation.action.lazy(evaluation.size)) {
+						evaluation.push(new Lazy<>(() -> value(child, node)));
+						continue;
+					}
+					if (child.error != null || child.terminated)
+						return child;
+					for (Object value : child.values)
+						evaluation.push(value);
+				}
+
+				invokeNonTerminalMethod(node, evaluation, 0);
+
+				if (evaluation.size > 0 && evaluation.operands[0] == ControlCode.TERMINATE)
+					return Results.TERMINATED;
+				return evaluation.size == 0 ? Results.EMPTY : new Results(evaluation.values(), null, false);
+			} catch (SemanticException e) {
+				return new Results(null, e, false);
+			} finally {
+				evaluation.truncate(0);
+			}
+		}
+	}
+
+	// evaluates a subtree, analyzing concurrently the children of the nodes annotated with ParallelSubtrees
+	private class SubtreeTask extends RecursiveTask<Results> {
+		private static final long serialVersionUID = 1L;
+		private final SyntaxTree tree;
+		private final Memoization.Session session;
+
+		SubtreeTask(SyntaxTree tree, Memoization.Session session) {
 			this.tree = tree;
-			this.father = father;
+			this.session = session;
+		}
+
+		@Override
+		protected Results compute() {
+			try {
+				if (!parallel(tree))
+					return evaluate(tree, session);
+
+				ActionReducer reducer = new ActionReducer();
+				List<SubtreeTask> tasks = new ArrayList<>();
+				List<Results> children = new ArrayList<>();
+				for (SyntaxTree child : tree) {
+					if (child.terminal())
+						children.add(reducer.terminal(child));
+					else {
+						SubtreeTask task = new SubtreeTask(child, session);
+						task.fork();
+						tasks.add(task);
+						children.add(null);
+					}
+				}
+
+				Iterator<SubtreeTask> joined = tasks.iterator();
+				for (ListIterator<Results> it = children.listIterator(); it.hasNext();)
+					if (it.next() == null)
+						it.set(joined.next().join());
+
+				return reducer.nonTerminal(tree, children);
+			} catch (SemanticException e) {
+				return new Results(null, e, false);
+			}
 		}
 	}
 
 	private static class Interpretation implements Comparable<Interpretation> {
 		int priority; //priority of the interpreter
 		Interpreter interpreter;
-		Method method;
+		//the action of the interpreter class, shared by all the interpreters of the class
+		final InterpreterMetadata.Action action;
 		String ruleHead;
 		String[] ruleProduction;
-
-		public Interpretation(Interpreter interpreter, Method method, int priority) {
-			this(interpreter, method, priority, null);
-		}
-		
-		public Interpretation(Interpreter interpreter, Method method, int priority, NonTerminalToken ntt) {
+		//the number of the interpretation among the non-terminal ones of the analyzer
+		int ordinal = -1;
+
+		final int arity;
+		final Class<?> varArgsType;
+		final boolean noBufferClear;
+		final boolean parallel;
+		final boolean pure;
+		//true if the action takes some lazy argument
+		final boolean lazy;
+		//true if the action fits the primitive lane, with the tags of its parameters and of its result
+		final boolean primitiveLane;
+		final PrimitiveLanes.Tag[] laneParameters;
+		final PrimitiveLanes.Tag laneResult;
+
+		/**
+		 * Binds an action to an interpreter, for a rule or for the terminal tokens of the action.
+		 * 
+		 * @param interpreter the interpreter of the action
+		 * @param action the semantic action
+		 * @param priority the priority of the interpreter
+		 * @param rule the index of the rule of the action, or -1 for a terminal interpretation
+		 */
+		Interpretation(Interpreter interpreter, InterpreterMetadata.Action action, int priority, int rule) {
 			this.interpreter = interpreter;
-			this.method = method;
+			this.action = action;
 			this.priority = priority;
+			this.arity = action.arity;
+			this.varArgsType = action.varArgsType;
+			this.noBufferClear = action.descriptor.noBufferClear;
+			this.parallel = rule >= 0 && action.descriptor.parallel;
+			this.pure = action.descriptor.pure;
+			this.lazy = action.lazyParameters != null;
+			this.primitiveLane = action.primitiveLane;
+			this.laneParameters = action.laneParameters;
+			this.laneResult = action.laneResult;
 			
-			if(ntt != null) {
-				Language languageAnnotation = interpreter.getClass().getAnnotation(Language.class);
-				String language;
-				if(languageAnnotation != null)
-					language = languageAnnotation.value() + ".";
-				else
-					language = "";
-				
-				ruleHead = ntt.ruleHead();
-				if(!ruleHead.contains("."))
-					ruleHead = language + ruleHead;
-				
-				String[] originalProd = ntt.ruleProduction();
-				ruleProduction = new String[originalProd.length];
-				for(int i=0; i<originalProd.length; i++) {
-					if(!originalProd[i].contains("."))
-						if(originalProd[i].startsWith(EditableParser.TERMINAL_PREFIX))
-							ruleProduction[i] = "$" + language + originalProd[i].substring(1);
-						else
-							ruleProduction[i] = language + originalProd[i];
-					else
-						ruleProduction[i] = originalProd[i];
-				}
+			if(rule >= 0) {
+				ruleHead = action.ruleHeads[rule];
+				ruleProduction = action.ruleProductions[rule];
 			}
 		}
 		
+		Method method() {
+			return action.method();
+		}
+		
 		public String[] ruleProduction() {
 			return ruleProduction;
 		}
@@ -133,11 +364,15 @@ public class SemanticAnalyzer {
 
 		public Object invoke(Object... args)
 				throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-			boolean accessible = method.isAccessible();
-			method.setAccessible(true);
-			Object res = method.invoke(interpreter, args);
-			method.setAccessible(accessible);
-			return res;
+			return action.invoke(interpreter, args);
+		}
+		
+		long invokePrimitive(SyntaxTree tree) throws Throwable {
+			return action.invokePrimitive(interpreter, tree);
+		}
+		
+		long invokePrimitive(long[] bits, int offset) throws Throwable {
+			return action.invokePrimitive(interpreter, bits, offset);
 		}
 
 		@Override
@@ -148,48 +383,66 @@ public class SemanticAnalyzer {
 		}
 	}
 
+	/*
+	 * The interpretations of the productions of a grammar, indexed by the numbers of the productions,
+	 * and the silent productions, whose derivations contain no interpretation, then whose subtrees give no result.
+	 * In the tables cached by the metadata, the productions are mapped to the numbers of their interpretations,
+	 * or to UNINTERPRETED, or to SILENT.
+	 */
+	private static class ProductionTable {
+		static final int UNINTERPRETED = -1;
+		static final int SILENT = -2;
+
+		final Grammar grammar;
+		final Interpretation[] interpretations;
+		final boolean[] silent;
+
+		ProductionTable(Grammar grammar, Interpretation[] interpretations, boolean[] silent) {
+			this.grammar = grammar;
+			this.interpretations = interpretations;
+			this.silent = silent;
+		}
+	}
+
 	private Parser parser;
+	private volatile ProductionTable productionTable;
+	//the metadata of the class of the root interpreter, which caches the production tables
+	private final InterpreterMetadata metadata;
+	//the classes of the interpreters, with their priorities, in order of visit
+	private final List<Object> layout = new ArrayList<>();
+	//the non-terminal interpretations, in order of creation
+	private final List<Interpretation> nonTerminals = new ArrayList<>();
 
+	/**
+	 * Creates an analyzer for an interpreter and for the grammar of a parser.
+	 * The actions of the interpreter classes are resolved once for each class, and shared by the analyzers
+	 * of all the instances of the class: the analyzer only binds its interpreters to them.
+	 * 
+	 * @param interpreter the interpreter
+	 * @param parser the parser whose rules are interpreted
+	 */
 	public SemanticAnalyzer(Interpreter interpreter, Parser parser) {
 		if (interpreter == null)
 			throw new NullPointerException();
 		this.parser = parser;
+		this.metadata = InterpreterMetadata.of(interpreter.getClass());
 		createInterpretationsMaps(interpreter, 0);
 	}
 
 	private void createInterpretationsMaps(Interpreter interpreter, int priority) {
-		addAnnotationsEntries(interpreter, priority);
-
-		Field[] fields = interpreter.getClass().getDeclaredFields();
-
-		for (Field f : fields) {
-			if (Interpreter.class.isAssignableFrom(f.getType())) {
-				try {
-					boolean accessible = f.isAccessible();
-					f.setAccessible(true);
-					Interpreter son = (Interpreter) f.get(interpreter);
-					createInterpretationsMaps(son, priority + 1);
-					f.setAccessible(accessible);
-				} catch (IllegalArgumentException e) {
-					e.printStackTrace();
-				} catch (IllegalAccessException e) {
-					e.printStackTrace();
-				}
-			}
-		}
+		InterpreterMetadata metadata = InterpreterMetadata.of(interpreter.getClass());
+		layout.add(metadata.interpreterClass);
+		layout.add(priority);
+		addAnnotationsEntries(interpreter, priority, metadata);
+
+		for (Interpreter son : metadata.interpreters(interpreter))
+			createInterpretationsMaps(son, priority + 1);
 	}
 
-	void addTerminalTokens(String languagePrefix, Interpreter interpreter, int priority, Method method) {
-		TerminalToken[] terminalTokens = method.getDeclaredAnnotationsByType(TerminalToken.class);
+	void addTerminalTokens(Interpreter interpreter, int priority, InterpreterMetadata.Action action) {
 		
 		// add entries to the terminals' map
-		for (TerminalToken tt : terminalTokens) {
-
-			validateTerminalMethod(method);
-			
-			String type = tt.value();
-			if(!type.contains("."))
-				type = languagePrefix + type;
+		for (String type : action.terminalTypes) {
 
 			if (terminalMap.containsKey(type)) {
 				if (terminalMap.get(type).interpreter == interpreter) {
@@ -201,29 +454,36 @@ public class SemanticAnalyzer {
 			}
 
 			if (parser.getLexer().regex(type) == null) {
-				throw new AnnotationException(interpreter.getClass(), method, type);
+				throw new AnnotationException(interpreter.getClass(), action.method(), type);
 			}
 
-			terminalMap.put(type, new Interpretation(interpreter, method, priority));
+			Interpretation interpretation = new Interpretation(interpreter, action, priority, -1);
+			pure |= interpretation.pure;
+			terminalMap.put(type, interpretation);
 		}
 	}
 
-	void addNonTerminalTokens(Interpreter interpreter, int priority, Method method) {
-		NoBufferClear noBufferClear = method.getAnnotation(NoBufferClear.class);
-		NonTerminalToken[] nonTerminalTokens = method.getDeclaredAnnotationsByType(NonTerminalToken.class);
+	void addNonTerminalTokens(Interpreter interpreter, int priority, InterpreterMetadata.Action action) {
 
 		// add enties to the non-terminals' map
-		for (NonTerminalToken ntt : nonTerminalTokens) {
-			Interpretation newInt = new Interpretation(interpreter, method, priority, ntt);
+		for (int rule = 0; rule < action.ruleHeads.length; rule++) {
+			Interpretation newInt = new Interpretation(interpreter, action, priority, rule);
 
-			if (noBufferClear != null && newInt.ruleHead().equals(parser.getAxiom())) {
+			if (newInt.noBufferClear && newInt.ruleHead().equals(parser.getAxiom())) {
 				throw new AxiomBufferClearException();
 			}
 
 			if (!parser.ruleExists(newInt.ruleHead())) {
-				throw new AnnotationException(interpreter.getClass(), method, newInt.ruleHead());
+				throw new AnnotationException(interpreter.getClass(), action.method(), newInt.ruleHead());
 			}
 
+			newInt.ordinal = nonTerminals.size();
+			nonTerminals.add(newInt);
+
+			parallel |= newInt.parallel;
+			pure |= newInt.pure;
+			lazy |= newInt.lazy;
+
 			if (!nonTerminalMap.containsKey(newInt.ruleHead()))
 				nonTerminalMap.put(newInt.ruleHead(), new ArrayList<>());
 
@@ -240,7 +500,7 @@ public class SemanticAnalyzer {
 				boolean equals = false;
 				if (newInt.ruleProduction().length == currentInt.ruleProduction().length) {
 					equals = true;
-					for (int i = 0; i < ntt.ruleProduction().length; i++) {
+					for (int i = 0; i < newInt.ruleProduction().length; i++) {
 						String p1 = newInt.ruleProduction()[i];
 						String p2 = currentInt.ruleProduction()[i];
 						if (!p1.equals(p2)) {
@@ -249,7 +509,8 @@ public class SemanticAnalyzer {
 						}
 					}
 					if (equals && currentInt.interpreter == interpreter) {
-						throw new NonTerminalReplicationException(interpreter.getClass(), method, ntt);
+						throw new NonTerminalReplicationException(interpreter.getClass(), action.method(),
+								action.descriptor.ruleAnnotation(interpreter.getClass(), rule));
 					}
 				}
 				
@@ -289,61 +550,58 @@ public class SemanticAnalyzer {
 		}
 	}
 
-	private void validateTerminalMethod(Method method) {
-		Parameter[] parameters = method.getParameters();
-	
-		if (parameters.length > 0) {
-			boolean found = false; //indicates if the SyntaxTree argument has already been found
-			for (int i = 0; i < parameters.length; i++) {
-				if (parameters[i].getType().equals(SyntaxTree.class)) {
-					if (found)
-						throw new UnknownParameterException(method, parameters[i]);
-					found = true;
-				} else {
-					throw new UnknownParameterException(method, parameters[i]);
-				}
-			}
-		}
-	}
-
 	private Map<String, Interpretation> terminalMap = new HashMap<>();
+	//true if some interpretation is annotated with ParallelSubtrees
+	private boolean parallel;
+	private volatile ForkJoinPool pool;
+	//true if some interpretation is annotated with Pure
+	private boolean pure;
+	//true if some interpretation takes lazy arguments
+	private boolean lazy;
+	private volatile int memoCapacity = DEFAULT_MEMO_CAPACITY;
+	//the memoization shared by the analyses, or null if each analysis uses its own memoization
+	private volatile Memoization memoization;
 	private Map<String, List<Interpretation>> nonTerminalMap = new HashMap<>();
 
-	private void addAnnotationsEntries(Interpreter interpreter, int priority) {
-		Language languageAnnotation = interpreter.getClass().getAnnotation(Language.class);
-		String languagePrefix;
-		if(languageAnnotation != null)
-			languagePrefix = languageAnnotation.value() + ".";
-		else
-			languagePrefix = "";
-		Method[] methods = interpreter.getClass().getDeclaredMethods();
-
-		for (Method m : methods) {
-			TerminalToken[] tts = m.getAnnotationsByType(TerminalToken.class);
-			NonTerminalToken[] ntts = m.getAnnotationsByType(NonTerminalToken.class);
-
-			if (tts.length>0 && ntts.length > 0) {
-				throw new MutuallyExclusiveInterpretationsException(m);
-			}
-
-			if (tts.length > 0)
-				addTerminalTokens(languagePrefix, interpreter, priority, m);
-			if (ntts.length > 0)
-				addNonTerminalTokens(interpreter, priority, m);
+	private void addAnnotationsEntries(Interpreter interpreter, int priority, InterpreterMetadata metadata) {
+		for (InterpreterMetadata.Action action : metadata.actions) {
+			if (action.terminal)
+				addTerminalTokens(interpreter, priority, action);
+			else
+				addNonTerminalTokens(interpreter, priority, action);
 		}
 	}
 
-	private Object invokeTerminalMethod(SyntaxTree tree) throws SemanticException {
+	/**
+	 * Calls the semantic action of a terminal node, pushing its result on the operand stack
+	 * 
+	 * @param tree
+	 * @param evaluation
+	 * @return false if the action terminated the analysis, true otherwise
+	 * @throws SemanticException
+	 */
+	private boolean invokeTerminalMethod(SyntaxTree tree, Evaluation evaluation) throws SemanticException {
 		Interpretation interpretation = terminalMap.get(tree.type());
 		if (interpretation == null)
-			return null;// interpreter.terminal(tree);
+			return true;// interpreter.terminal(tree);
+
+		if (interpretation.primitiveLane) {
+			long bits;
+			try {
+				bits = interpretation.invokePrimitive(tree);
+			} catch (Throwable e) {
+				throw new SemanticException(e, tree);
+			}
+			evaluation.push(interpretation.laneResult, bits);
+			return true;
+		}
 
+		Object[] params = evaluation.arguments(interpretation.arity);
+		Object result = null;
 		try {
-			Parameter[] parameters = interpretation.method.getParameters();
-			if (parameters.length > 0)
-				return interpretation.invoke(tree);
-			else
-				return interpretation.invoke();
+			if (params.length > 0)
+				params[0] = tree;
+			result = interpretation.invoke(params);
 
 			// errore
 		} catch (IllegalAccessException e) {
@@ -352,76 +610,235 @@ public class SemanticAnalyzer {
 			e.printStackTrace();
 		} catch (InvocationTargetException e) {
 			throw new SemanticException(e.getTargetException(), tree);
+		} finally {
+			Arrays.fill(params, null);
 		}
 
+		if (result == ControlCode.TERMINATE)
+			return false;
+		if (result != null)
+			evaluation.push(result);
+		return true;
+	}
+
+	/**
+	 * Chooses the interpretation of a non-terminal tree. When the tree carries the number of its production,
+	 * the interpretation is looked up in the table of the grammar of the tree, built once for each grammar,
+	 * otherwise the interpretations of the tree type are queried in order.
+	 * 
+	 * @param tree the non-terminal tree
+	 * @return the interpretation of the tree, or null
+	 */
+	private Interpretation interpretation(SyntaxTree tree) {
+		ProductionTable table = productionTable(tree);
+		if (table != null)
+			return table.interpretations[tree.production()];
+
+		List<Interpretation> interpretations = nonTerminalMap.get(tree.type());
+		if (interpretations != null)
+			for (Interpretation interpretation : interpretations)
+				if (tree.query(interpretation.ruleHead(), interpretation.ruleProduction()))
+					return interpretation;
 		return null;
+	}
+
+	/**
+	 * Gets the production table of the grammar of a tree, which is built once for each grammar
+	 * 
+	 * @param tree the non-terminal tree
+	 * @return the production table, or null if the tree does not carry the number of its production
+	 */
+	private ProductionTable productionTable(SyntaxTree tree) {
+		int production = tree.production();
+		Grammar grammar = tree.grammar();
+		if (production < 0 || grammar == null)
+			return null;
+
+		ProductionTable table = productionTable;
+		if (table == null || table.grammar != grammar)
+			productionTable = table = productionTable(grammar);
+		return table;
+	}
+
+	/**
+	 * Resolves the interpretation of each production of a grammar, as {@link SyntaxTree#query(String, String...)}
+	 * would do on every tree produced by the production, and finds the silent productions. The resolution is shared
+	 * by the analyzers with the same grammar and the same classes of interpreters.
+	 */
+	private ProductionTable productionTable(Grammar grammar) {
+		Interpretation[] interpretations = new Interpretation[grammar.productionCount()];
+		boolean[] silent = new boolean[interpretations.length];
+		int[] table = metadata.table(grammar, layout);
+		if (table != null) {
+			for (int id = 0; id < interpretations.length; id++) {
+				interpretations[id] = table[id] < 0 ? null : nonTerminals.get(table[id]);
+				silent[id] = table[id] == ProductionTable.SILENT;
+			}
+			return new ProductionTable(grammar, interpretations, silent);
+		}
+
+		table = new int[interpretations.length];
+		for (int id = 0; id < interpretations.length; id++) {
+			table[id] = ProductionTable.UNINTERPRETED;
+			List<Interpretation> candidates = nonTerminalMap.get(grammar.productionHead(id));
+			if (candidates == null)
+				continue;
+
+			List<String> production = grammar.production(id);
+			for (Interpretation interpretation : candidates) {
+				if (matches(interpretation.ruleProduction(), production)) {
+					interpretations[id] = interpretation;
+					table[id] = interpretation.ordinal;
+					break;
+				}
+			}
+		}
+
+		silent = silentProductions(grammar, interpretations);
+		for (int id = 0; id < table.length; id++)
+			if (silent[id])
+				table[id] = ProductionTable.SILENT;
+		metadata.table(grammar, layout, table);
+		return new ProductionTable(grammar, interpretations, silent);
+	}
+
+	/**
+	 * Finds the productions whose derivations contain no interpretation: a production is not silent if it is interpreted,
+	 * or if it produces a terminal token with a semantic action, or a rule head with some production that is not silent.
+	 * 
+	 * @param grammar the grammar
+	 * @param interpretations the interpretations of the productions of the grammar
+	 * @return the silent productions, indexed by their numbers
+	 */
+	private boolean[] silentProductions(Grammar grammar, Interpretation[] interpretations) {
+		boolean[] silent = new boolean[interpretations.length];
+		Arrays.fill(silent, true);
+		Map<String, List<Integer>> heads = new HashMap<>();
+		for (int id = 0; id < silent.length; id++)
+			heads.computeIfAbsent(grammar.productionHead(id), head -> new ArrayList<>()).add(id);
+
+		// the productions that are not silent are found up to the fixed point
+		boolean changed;
+		do {
+			changed = false;
+			for (int id = 0; id < silent.length; id++) {
+				if (!silent[id])
+					continue;
+				boolean gives = interpretations[id] != null;
+				for (Iterator<String> it = grammar.production(id).iterator(); !gives && it.hasNext();) {
+					String symbol = it.next();
+					if (symbol.startsWith(EditableParser.TERMINAL_PREFIX))
+						gives = terminalMap.containsKey(symbol.substring(EditableParser.TERMINAL_PREFIX.length()));
+					else if (heads.containsKey(symbol))
+						for (int production : heads.get(symbol))
+							gives |= !silent[production];
+				}
+				if (gives) {
+					silent[id] = false;
+					changed = true;
+				}
+			}
+		} while (changed);
+		return silent;
+	}
+
+	private static boolean matches(String[] query, List<String> production) {
+		if (query.length == 1) {
+			if (query[0].equals("#"))
+				return production.isEmpty();
+			if (query[0].equals("!#"))
+				return !production.isEmpty();
+		}
+
+		if (query.length > production.size())
+			return false;
 
+		for (int i = 0; i < query.length; i++)
+			if (!query[i].equals(production.get(i)))
+				return false;
+		return true;
 	}
 
 	/**
 	 * Implements the Java Reflection stuff to call the correct method for a
-	 * non-terminal token
+	 * non-terminal token. The results of the children are the operands above the base,
+	 * and they are replaced by the result of the method, unless the buffer must not be cleared.
 	 * 
 	 * @param tree
-	 * @param resultsBuffer
+	 * @param evaluation
+	 * @param base
 	 * @throws SemanticException
 	 */
-	private void invokeNonTerminalMethod(SyntaxTree tree, List<Object> resultsBuffer) throws SemanticException {
+	private void invokeNonTerminalMethod(SyntaxTree tree, Evaluation evaluation, int base) throws SemanticException {
 
-		List<Interpretation> interpretations = nonTerminalMap.get(tree.type());
+		Interpretation interpretation = interpretation(tree);
 		Object result = null;
 		Object[] params = null;
 		Interpretation current = null;
+		int results = evaluation.size - base;
+
+		if (interpretation != null && interpretation.primitiveLane && inLane(interpretation, evaluation, base, results)) {
+			long bits;
+			try {
+				bits = interpretation.invokePrimitive(evaluation.bits, base);
+			} catch (Throwable e) {
+				throw new SemanticException(e, tree, interpretation.interpreter.getClass().getCanonicalName() + "."
+						+ interpretation.method().getName() + " " + Arrays.toString(interpretation.method().getParameters()));
+			}
+
+			if (!interpretation.noBufferClear)
+				evaluation.truncate(base);
+			evaluation.push(interpretation.laneResult, bits);
+			return;
+		}
 
 		try {
-			if (interpretations != null) {
-				for (Interpretation interpretation : interpretations) {
-					current = interpretation;
-					if (tree.query(interpretation.ruleHead(), interpretation.ruleProduction())) {
-						boolean noBufferClear = interpretation.method.getAnnotation(NoBufferClear.class) != null;
-						Parameter[] mParams = interpretation.method.getParameters();
-
-						params = new Object[mParams.length];
-
-						// set first parameters
-						for (int i = 0; i < mParams.length - 1; i++) {
-							if (i < resultsBuffer.size())
-								params[i] = resultsBuffer.get(i);
-						}
+			if (interpretation != null) {
+				current = interpretation;
+				boolean noBufferClear = interpretation.noBufferClear;
 
-						// set last parameter
-						if (params.length > 0) {
-							Parameter lastParam = mParams[mParams.length - 1];
-							if (lastParam.isVarArgs()) {
-								int start = mParams.length - 1;
-								Class<?> varArgsType = lastParam.getType().getComponentType();
-								Object varArgs = Array.newInstance(varArgsType, resultsBuffer.size() - start);
-
-								for (int i = start; i < resultsBuffer.size(); i++) {
-									Array.set(varArgs, i - start, varArgsType.cast(resultsBuffer.get(i)));
-								}
-								params[params.length - 1] = varArgs;
-							} else {
-								if (params.length == resultsBuffer.size())
-									params[params.length - 1] = resultsBuffer.get(params.length - 1);
-								else if (params.length < resultsBuffer.size() && !noBufferClear)
-									System.err.println("**WARNING** [SemanticAnalyzer] some semantic result "
-											+ "might be lost for the method '" + interpretation.method + "'");
-
-							}
-						}
+				params = evaluation.arguments(interpretation.arity);
 
-						// invoke
-						result = interpretation.invoke(params);
+				// set first parameters
+				for (int i = 0; i < params.length - 1; i++) {
+					if (i < results)
+						params[i] = argument(interpretation, evaluation, base, i, tree);
+				}
 
-						if (!noBufferClear)
-							resultsBuffer.clear();
+				// set last parameter
+				if (params.length > 0) {
+					Class<?> varArgsType = interpretation.varArgsType;
+					if (varArgsType != null) {
+						int start = params.length - 1;
+						Object varArgs = Array.newInstance(varArgsType, results - start);
+
+						if (varArgsType.isPrimitive()) {
+							for (int i = start; i < results; i++)
+								Array.set(varArgs, i - start, argument(interpretation, evaluation, base, i, tree));
+						} else {
+							Object[] objects = (Object[]) varArgs;
+							for (int i = start; i < results; i++)
+								objects[i - start] = varArgsType.cast(argument(interpretation, evaluation, base, i, tree));
+						}
+						params[params.length - 1] = varArgs;
+					} else {
+						if (params.length == results)
+							params[params.length - 1] = argument(interpretation, evaluation, base, params.length - 1, tree);
+						else if (params.length < results && !noBufferClear)
+							System.err.println("**WARNING** [SemanticAnalyzer] some semantic result "
+									+ "might be lost for the method '" + interpretation.method() + "'");
 
-						if (result != null)
-							resultsBuffer.add(result);
-						break;
 					}
 				}
+
+				// invoke
+				result = interpretation.invoke(params);
+
+				if (!noBufferClear)
+					evaluation.truncate(base);
+
+				if (result != null)
+					evaluation.push(result);
 			}
 
 			// if(!executed) { interpreter.nonTerminal(tree, resultsBuffer);return;}
@@ -430,16 +847,98 @@ public class SemanticAnalyzer {
 		} catch (IllegalArgumentException e) {
 			e.printStackTrace();
 		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Lazy.Failure) {
+				// a lazy argument failed, or terminated the analysis
+				Lazy.Failure failure = (Lazy.Failure) e.getCause();
+				if (failure.error != null)
+					throw failure.error;
+				evaluation.truncate(base);
+				evaluation.push(ControlCode.TERMINATE);
+				return;
+			}
 			if (e.getCause() instanceof ClassCastException)
-				System.err.println("The method\n\t'" + current.method
+				System.err.println("The method\n\t'" + current.method()
 						+ "'\nwas called with the following parameters\n\t" + Arrays.deepToString(params));
 			throw new SemanticException(e.getCause(), tree, current.interpreter.getClass().getCanonicalName() + "."
-					+ current.method.getName() + " " + Arrays.toString(current.method.getParameters()));
+					+ current.method().getName() + " " + Arrays.toString(current.method().getParameters()));
 		} catch (ClassCastException e) {
 			e.printStackTrace();
+		} finally {
+			if (params != null)
+				Arrays.fill(params, null);
+		}
+	}
+
+	/**
+	 * Gets an argument of a semantic action, awaiting the result of an asynchronous action,
+	 * unless the parameter takes the future itself
+	 * 
+	 * @param interpretation
+	 *            the interpretation of the node
+	 * @param evaluation
+	 * @param base
+	 * @param position
+	 *            the position of the argument
+	 * @param tree
+	 *            the node
+	 * @return the argument
+	 * @throws SemanticException
+	 *             if the asynchronous action failed
+	 */
+	private static Object argument(Interpretation interpretation, Evaluation evaluation, int base, int position, SyntaxTree tree)
+			throws SemanticException {
+		Object value = evaluation.value(base + position);
+		if (value instanceof CompletableFuture && !interpretation.action.future(position))
+			return await(value, tree);
+		return value;
+	}
+
+	/**
+	 * Waits for the result of an asynchronous action, when the specified value is the future returned by the action.
+	 * The failure of the action is raised as a semantic error of the node that waits for the result.
+	 * 
+	 * @param value
+	 *            a result of a semantic action
+	 * @param tree
+	 *            the node that waits for the result
+	 * @return the value, or the result of the action
+	 * @throws SemanticException
+	 *             if the asynchronous action failed, or it was cancelled
+	 */
+	private static Object await(Object value, SyntaxTree tree) throws SemanticException {
+		if (!(value instanceof CompletableFuture))
+			return value;
+		try {
+			return ((CompletableFuture<?>) value).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() == null ? e : e.getCause();
+			if (cause instanceof SemanticException)
+				throw (SemanticException) cause;
+			throw new SemanticException(cause, tree);
+		} catch (CancellationException e) {
+			throw new SemanticException(e, tree);
 		}
 	}
 
+	/**
+	 * Tells if the results of the children of a node can be passed to its semantic action through the primitive lane
+	 * 
+	 * @param interpretation
+	 *            the interpretation of the node, adapted to the primitive lane
+	 * @param evaluation
+	 * @param base
+	 * @param results
+	 * @return true if every result is a primitive value of the type of the corresponding parameter
+	 */
+	private static boolean inLane(Interpretation interpretation, Evaluation evaluation, int base, int results) {
+		if (results != interpretation.arity)
+			return false;
+		for (int i = 0; i < results; i++)
+			if (evaluation.operands[base + i] != interpretation.laneParameters[i])
+				return false;
+		return true;
+	}
+
 	/**
 	 * Implements the iterative algorithm that visits the specified syntax tree and
 	 * calls the semantic actions on the interpreter
@@ -453,53 +952,298 @@ public class SemanticAnalyzer {
 	 *             if more than one result are returned by the axiom semantic action
 	 */
 	public Object analyze(SyntaxTree tree) throws SemanticException {
+		Results results = evaluate(tree, session());
 
-		// data structures
-		LinkedList<TreeNode> stack = new LinkedList<>();
-		Object result;
-
-		// put the root in the stack
-		TreeNode root = new TreeNode(tree, null);
-		stack.push(root);
-
-		while (stack.size() > 0) {
-			TreeNode node = stack.peek();
-
-			if (node.tree.terminal()) {
-				
-				result = invokeTerminalMethod(node.tree);
-
-				if (result == ControlCode.TERMINATE)
-					return null;
+		if (results.terminated || results.values.length == 0)
+			return null;
 
-				if (result != null && node.father != null)
-					node.father.results.add(result);
+		return await(results.values[0], tree);
+	}
 
-				stack.pop();
+	/**
+	 * Visits the specified subtree, calling the semantic actions on the interpreter.
+	 * The subtrees of the nodes annotated with {@link ParallelSubtrees} are evaluated by concurrent tasks,
+	 * and the results of the pure subtrees are memoized (see {@link Pure}).
+	 * 
+	 * @param tree
+	 *            the root of the subtree
+	 * @param session
+	 *            the session of the memoization, or null if no interpretation is pure
+	 * @return the results of the root, or {@link Results#TERMINATED} if an action terminated the analysis
+	 * @throws SemanticException
+	 *             if the interpreter discovers semantic errors
+	 */
+	private Results evaluate(SyntaxTree tree, Memoization.Session session) throws SemanticException {
+
+		Evaluation evaluation = new Evaluation();
+
+		// the root is visited first, then the children of the innermost open node
+		SyntaxTree next = tree;
+		do {
+			if (next != null) {
+				next = descend(next, evaluation.depth == 0);
+				long memo = next != null && session != null && pure(next) ? session.id(next) : -1;
+				Memoization.Entry memoized = memo < 0 ? null : session.memoization().get(memo);
+
+				if (next == null) {
+					// the subtree gives no result
+				} else if (memoized != null) {
+					evaluation.push(memoized);
+
+					// the result of a terminal root is not returned
+					if (evaluation.depth == 0 && next.terminal())
+						evaluation.truncate(0);
+				} else if (next.terminal()) {
+					int base = evaluation.size;
+					if (!invokeTerminalMethod(next, evaluation))
+						return Results.TERMINATED;
+					if (memo >= 0)
+						session.memoization().put(memo, evaluation.operands, evaluation.bits, base, evaluation.size);
+
+					// the result of a terminal root is not returned
+					if (evaluation.depth == 0)
+						evaluation.truncate(0);
+				} else if (parallel(next)) {
+					// the concurrent task evaluates the whole subtree, then its results are taken as the results of a child
+					SubtreeTask task = new SubtreeTask(next, session);
+					Results results = ForkJoinTask.inForkJoinPool() ? task.invoke() : getPool().invoke(task);
+
+					if (results.error != null)
+						throw results.error;
+					if (results.terminated)
+						return Results.TERMINATED;
+					if (evaluation.depth == 0)
+						return results;
+
+					for (Object value : results.values)
+						evaluation.push(value);
+				} else {
+					Interpretation interpretation = lazy ? interpretation(next) : null;
+					evaluation.open(next, memo, interpretation != null && interpretation.lazy ? interpretation : null);
+				}
 			} else {
-				if (node.expanded) {
+				// all the children of the innermost node were visited, then its results replace theirs
+				int base = evaluation.bases[evaluation.depth - 1];
+				invokeNonTerminalMethod(evaluation.trees[evaluation.depth - 1], evaluation, base);
+				
+				if (evaluation.size > base && evaluation.operands[base] == ControlCode.TERMINATE)
+					return Results.TERMINATED;
 
-					invokeNonTerminalMethod(node.tree, node.results);
+				long memo = evaluation.memos[evaluation.depth - 1];
+				if (memo >= 0)
+					session.memoization().put(memo, evaluation.operands, evaluation.bits, base, evaluation.size);
 
-					if (node.results.size() > 0 && node.results.get(0) == ControlCode.TERMINATE)
-						return null;
+				evaluation.close();
+			}
 
-					if (node.father != null)
-						node.father.results.addAll(node.results);
-					stack.pop();
-				} else {
-					SyntaxIterator it = node.tree.iteratorFromLast();
-					while (it.hasPrevious())
-						stack.push(new TreeNode(it.previous(), node));
-					node.expanded = true;
+			// the children of the lazy arguments are not visited, and a lazy argument takes their place
+			next = null;
+			while (evaluation.depth > 0 && evaluation.children[evaluation.depth - 1].hasNext()) {
+				SyntaxTree child = evaluation.children[evaluation.depth - 1].next();
+				if (!deferred(child, evaluation)) {
+					next = child;
+					break;
 				}
+				evaluation.push(defer(child, session));
 			}
+		} while (evaluation.depth > 0);
+
+		return evaluation.size == 0 ? Results.EMPTY : new Results(evaluation.values(), null, false);
+	}
+
+	/**
+	 * Skips the subtrees without interpretation, and the chains of nodes that only pass up the results of their only child:
+	 * the nodes that are not interpreted, and that have one child, are not visited, and their child is visited in their place.
+	 * 
+	 * @param tree
+	 *            the node to visit
+	 * @param root
+	 *            true if the node is the root of the analysis, whose results are not returned if it is terminal
+	 * @return the node to visit in place of the specified one, or null if its subtree contains no interpretation
+	 */
+	private SyntaxTree descend(SyntaxTree tree, boolean root) {
+		while (!tree.terminal()) {
+			ProductionTable table = productionTable(tree);
+			if (table == null)
+				return tree;
+			int production = tree.production();
+			if (table.silent[production])
+				return null;
+			if (table.interpretations[production] != null || tree.nexts() != 1)
+				return tree;
+
+			SyntaxTree child = tree.iterator().next();
+			if (root && child.terminal())
+				return tree;
+			tree = child;
 		}
+		return tree;
+	}
+
+	/**
+	 * Tells if a child of the innermost open node is passed to a lazy argument of the action of the node
+	 * 
+	 * @param child
+	 *            the child
+	 * @param evaluation
+	 * @return true if the child gives a result, and the result would be passed to a lazy parameter
+	 */
+	private boolean deferred(SyntaxTree child, Evaluation evaluation) {
+		Interpretation interpretation = evaluation.lazies[evaluation.depth - 1];
+		if (interpretation == null || !interpretation.action.lazy(evaluation.size - evaluation.bases[evaluation.depth - 1]))
+			return false;
+
+		// the terminals without interpretation and the silent subtrees give no result, so they take no argument
+		SyntaxTree node = descend(child, false);
+		return node != null && (!node.terminal() || terminalMap.containsKey(node.type()));
+	}
+
+	/**
+	 * Creates the lazy argument of a subtree, which is evaluated when the semantic action asks for its value
+	 * 
+	 * @param tree
+	 *            the root of the subtree
+	 * @param session
+	 *            the session of the memoization, or null if no interpretation is pure
+	 * @return the lazy argument
+	 */
+	private Lazy<Object> defer(SyntaxTree tree, Memoization.Session session) {
+		return new Lazy<>(() -> {
+			if (!tree.terminal())
+				return value(evaluate(tree, session), tree);
+
+			Evaluation evaluation = new Evaluation();
+			if (!invokeTerminalMethod(tree, evaluation))
+				return value(Results.TERMINATED, tree);
+			return evaluation.size == 0 ? null : await(evaluation.value(0), tree);
+		});
+	}
+
+	/**
+	 * Gets the value of a lazy argument from the results of its subtree
+	 * 
+	 * @param results
+	 *            the results of the subtree
+	 * @param tree
+	 *            the node that waits for the result, if it is asynchronous
+	 * @return the first result, or null
+	 * @throws SemanticException
+	 *             the error of the subtree
+	 */
+	private static Object value(Results results, SyntaxTree tree) throws SemanticException {
+		if (results.error != null)
+			throw results.error;
+		if (results.terminated)
+			throw new Lazy.Failure(null);
+		return results.values.length == 0 ? null : await(results.values[0], tree);
+	}
+
+	/**
+	 * Tells if the children of the specified node are analyzed concurrently
+	 * 
+	 * @param tree
+	 *            the node
+	 * @return true if the node is interpreted by a method annotated with {@link ParallelSubtrees}
+	 */
+	private boolean parallel(SyntaxTree tree) {
+		if (!parallel || tree.terminal())
+			return false;
+		Interpretation interpretation = interpretation(tree);
+		return interpretation != null && interpretation.parallel;
+	}
+
+	/**
+	 * Tells if the results of the specified node are memoized
+	 * 
+	 * @param tree
+	 *            the node
+	 * @return true if the node is interpreted by a method annotated with {@link Pure}
+	 */
+	private boolean pure(SyntaxTree tree) {
+		if (!pure)
+			return false;
+		Interpretation interpretation = tree.terminal() ? terminalMap.get(tree.type()) : interpretation(tree);
+		return interpretation != null && interpretation.pure;
+	}
+
+	/**
+	 * Creates the session of the memoization for an analysis
+	 * 
+	 * @return the new session, or null if no interpretation is pure
+	 */
+	private Memoization.Session session() {
+		if (!pure)
+			return null;
+		Memoization memoization = this.memoization;
+		return (memoization == null ? new Memoization(memoCapacity) : memoization).session();
+	}
+
+	/**
+	 * Sets the memoization of the results of the semantic actions annotated with {@link Pure}.
+	 * By default, the results are reused inside each analysis, and at most {@link #DEFAULT_MEMO_CAPACITY} results are held.
+	 * Setting the memoization discards the results held by the analyzer.
+	 * 
+	 * @param scope
+	 *            the scope of the memoized results
+	 * @param capacity
+	 *            the max number of the memoized results, evicted with the LRU policy (Least Recently Used)
+	 * @throws IllegalArgumentException
+	 *             if the capacity is not positive
+	 */
+	public void setMemoization(MemoScope scope, int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity <= 0");
+		this.memoCapacity = capacity;
+		this.memoization = scope == MemoScope.ANALYZER ? new Memoization(capacity) : null;
+	}
+
+	/**
+	 * Sets the pool that runs the concurrent analysis of the subtrees annotated with {@link ParallelSubtrees}.
+	 * 
+	 * @param pool
+	 *            the pool to use, or null to use the common pool (default)
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the pool that runs the concurrent analysis of the subtrees annotated with {@link ParallelSubtrees}.
+	 * 
+	 * @return the pool used by this analyzer
+	 */
+	public ForkJoinPool getPool() {
+		ForkJoinPool pool = this.pool;
+		return pool == null ? ForkJoinPool.commonPool() : pool;
+	}
+
+	/**
+	 * Parses the specified input and calls the semantic actions on the interpreter while the input is parsed,
+	 * without building the syntax tree (see {@link Parser#parse(CharSequence, SyntaxReducer)}).<br>
+	 * The semantic actions of a node are called as soon as its rule is recognized, then they can be called also
+	 * for the nodes of the productions that the parser discards later: this mode fits the interpreters whose actions
+	 * have no side effects, and only compute their results from the results of the children. The semantic errors and
+	 * the terminations are considered only if they belong to the final syntax tree.<br>
+	 * The nodes passed to the actions of the non-terminal tokens have no children.
+	 * 
+	 * @param input
+	 *            the string to analyze
+	 * @return the result of semantic analysis or null
+	 * @throws UnexpectedSymbolException
+	 *             if an unexpected symbol was found by the parser
+	 * @throws SemanticException
+	 *             if the interpreter discovers semantic errors
+	 */
+	public Object analyze(CharSequence input) throws UnexpectedSymbolException, SemanticException {
+		ActionReducer reducer = new ActionReducer();
+		Results results = parser.parse(input, reducer);
 
-		if (root.results.size() == 0)
+		if (results == null || results.terminated)
 			return null;
+		if (results.error != null)
+			throw results.error;
 
-		return root.results.remove(0);
+		return results.values.length == 0 ? null : await(results.values[0], reducer.last);
 	}
 
 }
@@ -7,12 +7,20 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Repeatable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.concurrent.CompletableFuture;
 
 import jointyc.analysis.parser.SyntaxTree;
+import jointyc.analysis.semantic.Lazy;
 import jointyc.analysis.semantic.SemanticAnalyzer;
 
 /**
  * Annotate a method for the interpretation of a non-terminal token.
+ * The method takes the results of the children of the node, in order, but the parameters of type {@link Lazy}
+ * take the children themselves, which are evaluated only when the method asks for their values.
+ * The method can return a {@link CompletableFuture}, so that the analysis goes on with the other subtrees while the result is computed:
+ * the future is awaited before its result is passed to the parent method, unless the parameter takes the future itself.<br>
+ * The {@link jointyc.analysis.semantic.processor.DispatcherProcessor} generates a class that calls the actions directly, without reflection,
+ * only when none of the actions of the interpreter class is private: the actions should be package-private, protected or public.
  * @author Salvatore Giampa'
  *
  */
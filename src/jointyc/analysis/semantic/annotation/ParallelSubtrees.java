@@ -0,0 +1,21 @@
+package jointyc.analysis.semantic.annotation;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the evaluation of the subtrees of the nodes interpreted by the annotated method has no side effects,
+ * so that the children of the nodes can be analyzed concurrently. The results of the children are passed to the method
+ * in order, as in a sequential analysis.<br>
+ * It should be used on the methods of the rules whose children are large and independent, such as the items of a list of declarations.
+ * @author Salvatore Giamp
+ *
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface ParallelSubtrees {}
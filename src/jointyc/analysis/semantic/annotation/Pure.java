@@ -0,0 +1,21 @@
+package jointyc.analysis.semantic.annotation;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the results of the nodes interpreted by the annotated method depend only on the types, the productions and
+ * the tokens of their subtrees: the method and the semantic actions of the subtrees have no side effects.<br>
+ * The {@link jointyc.analysis.semantic.SemanticAnalyzer} evaluates once the subtrees with the same structure, and reuses their results
+ * (see {@link jointyc.analysis.semantic.SemanticAnalyzer#setMemoization(jointyc.analysis.semantic.SemanticAnalyzer.MemoScope, int)}).
+ * @author Salvatore Giamp
+ *
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface Pure {}
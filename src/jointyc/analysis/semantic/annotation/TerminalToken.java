@@ -12,7 +12,9 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 
 /**
- * Annotate a method for the interpretation of terminal token
+ * Annotate a method for the interpretation of terminal token.
+ * As for {@link NonTerminalToken}, the method can return a {@link java.util.concurrent.CompletableFuture} of its result,
+ * and it should not be private, so that the actions of its class are called without reflection.
  * @author Salvatore Giampa'
  *
  */
@@ -21,6 +21,7 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 
 import jointyc.analysis.parser.SyntaxTree;
+import jointyc.charsequence.LineIndex;
 
 /**
  * Usually thrown when an interpretation error occurs (For example, considering some strongly typed language, the type checking reveals an error)
@@ -52,26 +53,13 @@ public class SemanticException extends Exception {
 		this.end = tree.end();
 		this.source = tree.source();
 		
-		startLine = 1; startColumn = 1; endLine = 1; endColumn = 1;
-		
-		for(int i=0; i<end; i++){
-			if(i<start){
-				if(source.charAt(i) == '\n'){
-					startColumn=1; startLine++;
-					endColumn=1; endLine++;
-				}
-				else{
-					startColumn++;
-					endColumn++;
-				}
-			}
-			else{
-				if(source.charAt(i) == '\n'){
-					endColumn=1; endLine++;
-				}
-				else endColumn++;
-			}
-		}
+		//an empty token is located at its end, that precedes its start
+		LineIndex lines = tree.lineIndex();
+		int first = Math.max(0, Math.min(start, end)), last = Math.max(0, end);
+		startLine = lines.line(first);
+		startColumn = lines.column(first);
+		endLine = lines.line(last);
+		endColumn = lines.column(last);
 	}
 	
 	/**
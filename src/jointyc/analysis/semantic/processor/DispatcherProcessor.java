@@ -0,0 +1,375 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.semantic.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import jointyc.analysis.semantic.InterpreterDispatcher;
+import jointyc.analysis.semantic.annotation.Language;
+import jointyc.analysis.semantic.annotation.NoBufferClear;
+import jointyc.analysis.semantic.annotation.NonTerminalToken;
+import jointyc.analysis.semantic.annotation.ParallelSubtrees;
+import jointyc.analysis.semantic.annotation.Pure;
+import jointyc.analysis.semantic.annotation.TerminalToken;
+
+/**
+ * Generates an {@link InterpreterDispatcher} for each interpreter class that declares semantic actions,
+ * so that the {@link jointyc.analysis.semantic.SemanticAnalyzer} calls the actions directly, without reading the annotations by reflection.<br>
+ * The processor is registered as a service of the library, so that it is run by <code>javac</code> when the library is in the class path.
+ * It can also be run explicitly, with the option <code>-processor jointyc.analysis.semantic.processor.DispatcherProcessor</code>.<br>
+ * <br>
+ * The dispatchers are not generated for the abstract, private, local and anonymous classes, and for the classes with private semantic actions:
+ * their actions are still called by reflection. The private fields that hold other interpreters are read by reflection too.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+@SupportedAnnotationTypes({
+	"jointyc.analysis.semantic.annotation.TerminalToken",
+	"jointyc.analysis.semantic.annotation.TerminalTokens",
+	"jointyc.analysis.semantic.annotation.NonTerminalToken",
+	"jointyc.analysis.semantic.annotation.NonTerminalTokens"
+})
+public class DispatcherProcessor extends AbstractProcessor {
+
+	private static final String INTERPRETER = "jointyc.analysis.semantic.Interpreter";
+	private static final String SYNTAX_TREE = "jointyc.analysis.parser.SyntaxTree";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<TypeElement> interpreters = new LinkedHashSet<>();
+		for (TypeElement annotation : annotations)
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+				if (element.getKind() == ElementKind.METHOD && action(element))
+					interpreters.add((TypeElement) element.getEnclosingElement());
+
+		for (TypeElement interpreter : interpreters)
+			if (interpreter(interpreter) && validate(interpreter) && dispatchable(interpreter))
+				generate(interpreter);
+		// the annotations are not claimed, so that the other processors still see them
+		return false;
+	}
+
+	private static boolean action(Element method) {
+		return method.getAnnotationsByType(TerminalToken.class).length > 0 || method.getAnnotationsByType(NonTerminalToken.class).length > 0;
+	}
+
+	// the annotated methods of an interpreter, in order of declaration
+	private static List<ExecutableElement> actions(TypeElement interpreter) {
+		List<ExecutableElement> actions = new ArrayList<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(interpreter.getEnclosedElements()))
+			if (action(method))
+				actions.add(method);
+		return actions;
+	}
+
+	/**
+	 * Reports the semantic actions that the analyzer would reject at run time
+	 * @param interpreter the interpreter class
+	 * @return true if no error was reported
+	 */
+	private boolean validate(TypeElement interpreter) {
+		boolean valid = true;
+		for (ExecutableElement method : actions(interpreter)) {
+			boolean terminal = method.getAnnotationsByType(TerminalToken.class).length > 0;
+			if (terminal && method.getAnnotationsByType(NonTerminalToken.class).length > 0) {
+				processingEnv.getMessager().printMessage(Kind.ERROR, "a semantic action can not interpret both terminal and non-terminal tokens", method);
+				valid = false;
+			}
+			else if (terminal) {
+				List<? extends VariableElement> parameters = method.getParameters();
+				if (parameters.size() > 1 || (parameters.size() == 1 && !erasure(parameters.get(0).asType()).equals(SYNTAX_TREE))) {
+					processingEnv.getMessager().printMessage(Kind.ERROR, "a terminal semantic action can only take a " + SYNTAX_TREE, method);
+					valid = false;
+				}
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Tells if a class is a concrete interpreter, whose actions are read by the analyzer.
+	 * The annotated methods of the other classes are neither validated nor dispatched.
+	 * @param type the class that declares the annotated methods
+	 * @return true if the class is a concrete interpreter class
+	 */
+	private boolean interpreter(TypeElement type) {
+		TypeMirror interpreterType = processingEnv.getElementUtils().getTypeElement(INTERPRETER).asType();
+		return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), interpreterType)
+				&& type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT);
+	}
+
+	/**
+	 * Tells if the generated dispatcher could call the actions of an interpreter class
+	 * @param interpreter the interpreter class
+	 * @return true if the dispatcher can be generated
+	 */
+	private boolean dispatchable(TypeElement interpreter) {
+		for (Element type = interpreter; type instanceof TypeElement; type = type.getEnclosingElement()) {
+			NestingKind nesting = ((TypeElement) type).getNestingKind();
+			if (type.getModifiers().contains(Modifier.PRIVATE) || nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS)
+				return false;
+		}
+
+		for (ExecutableElement method : actions(interpreter))
+			if (method.getModifiers().contains(Modifier.PRIVATE)) {
+				processingEnv.getMessager().printMessage(Kind.NOTE, "the semantic actions of " + interpreter.getQualifiedName()
+						+ " are called by reflection, because " + method.getSimpleName() + " is private:"
+						+ " make the actions of the class package-private, protected or public to generate its dispatcher", method);
+				return false;
+			}
+		return true;
+	}
+
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	private static String literal(String string) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (char c : string.toCharArray()) {
+			if (c == '"' || c == '\\')
+				literal.append('\\').append(c);
+			else if (c < ' ' || c > '~')
+				literal.append(String.format("\\u%04x", (int) c));
+			else
+				literal.append(c);
+		}
+		return literal.append('"').toString();
+	}
+
+	private static String literals(String[] strings) {
+		StringBuilder literals = new StringBuilder("new String[] {");
+		for (int i = 0; i < strings.length; i++)
+			literals.append(i > 0 ? ", " : "").append(literal(strings[i]));
+		return literals.append('}').toString();
+	}
+
+	// converts the raw bits of a primitive argument
+	private static String fromBits(TypeKind kind, String bits) {
+		switch (kind) {
+		case LONG:
+			return bits;
+		case DOUBLE:
+			return "Double.longBitsToDouble(" + bits + ")";
+		case FLOAT:
+			return "Float.intBitsToFloat((int) " + bits + ")";
+		case BOOLEAN:
+			return "(" + bits + " != 0)";
+		case CHAR:
+			return "(char) " + bits;
+		case SHORT:
+			return "(short) " + bits;
+		case BYTE:
+			return "(byte) " + bits;
+		default:
+			return "(int) " + bits;
+		}
+	}
+
+	// converts a primitive result to its raw bits
+	private static String toBits(TypeKind kind, String value) {
+		switch (kind) {
+		case DOUBLE:
+			return "Double.doubleToRawLongBits(" + value + ")";
+		case FLOAT:
+			return "(long) Float.floatToRawIntBits(" + value + ")";
+		case BOOLEAN:
+			return "(" + value + " ? 1L : 0L)";
+		case LONG:
+			return value;
+		default:
+			return "(long) " + value;
+		}
+	}
+
+	/**
+	 * Tells if an action fits the primitive lane of the analyzer
+	 * (see {@link jointyc.analysis.semantic.InterpreterDispatcher#invokePrimitive(jointyc.analysis.semantic.Interpreter, int, long[], int)})
+	 */
+	private boolean primitive(ExecutableElement method, boolean terminal) {
+		if (!method.getReturnType().getKind().isPrimitive() || method.isVarArgs())
+			return false;
+		for (VariableElement parameter : method.getParameters())
+			if (terminal ? !erasure(parameter.asType()).equals(SYNTAX_TREE) : !parameter.asType().getKind().isPrimitive())
+				return false;
+		return true;
+	}
+
+	private void generate(TypeElement interpreter) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(interpreter);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(interpreter).toString();
+		String name = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + InterpreterDispatcher.SUFFIX;
+		String type = erasure(interpreter.asType());
+		List<ExecutableElement> actions = actions(interpreter);
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty())
+			source.append("package ").append(packageName).append(";\n\n");
+		source.append("/**\n * Calls the semantic actions of {@link ").append(type).append("}.\n * Generated by ")
+				.append(DispatcherProcessor.class.getName()).append(".\n */\n");
+		source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\", \"cast\"})\n");
+		source.append("public final class ").append(name).append(" implements jointyc.analysis.semantic.InterpreterDispatcher {\n\n");
+
+		source.append("\t@Override\n\tpublic Class<? extends jointyc.analysis.semantic.Interpreter> interpreterClass() {\n\t\treturn ")
+				.append(type).append(".class;\n\t}\n\n");
+
+		Language language = interpreter.getAnnotation(Language.class);
+		source.append("\t@Override\n\tpublic String language() {\n\t\treturn ").append(language == null ? "null" : literal(language.value())).append(";\n\t}\n\n");
+
+		// descriptions of the actions
+		source.append("\t@Override\n\tpublic jointyc.analysis.semantic.DispatchedAction[] actions() {\n");
+		source.append("\t\treturn new jointyc.analysis.semantic.DispatchedAction[] {\n");
+		for (ExecutableElement method : actions) {
+			TerminalToken[] tts = method.getAnnotationsByType(TerminalToken.class);
+			NonTerminalToken[] ntts = method.getAnnotationsByType(NonTerminalToken.class);
+			String[] terminalTypes = new String[tts.length];
+			for (int i = 0; i < tts.length; i++)
+				terminalTypes[i] = tts[i].value();
+			String[] ruleHeads = new String[ntts.length];
+			StringBuilder ruleProductions = new StringBuilder("new String[][] {");
+			for (int i = 0; i < ntts.length; i++) {
+				ruleHeads[i] = ntts[i].ruleHead();
+				ruleProductions.append(i > 0 ? ", " : "").append(literals(ntts[i].ruleProduction()));
+			}
+			ruleProductions.append('}');
+
+			StringBuilder parameters = new StringBuilder("new Class<?>[] {");
+			List<? extends VariableElement> params = method.getParameters();
+			for (int i = 0; i < params.size(); i++)
+				parameters.append(i > 0 ? ", " : "").append(erasure(params.get(i).asType())).append(".class");
+			parameters.append('}');
+
+			source.append("\t\t\tnew jointyc.analysis.semantic.DispatchedAction(").append(literal(method.getSimpleName().toString())).append(", ")
+					.append(parameters).append(", ").append(erasure(method.getReturnType())).append(".class, ").append(method.isVarArgs()).append(",\n")
+					.append("\t\t\t\t\t").append(literals(terminalTypes)).append(", ").append(literals(ruleHeads)).append(", ").append(ruleProductions).append(",\n")
+					.append("\t\t\t\t\t").append(method.getAnnotation(NoBufferClear.class) != null).append(", ")
+					.append(method.getAnnotation(ParallelSubtrees.class) != null).append(", ")
+					.append(method.getAnnotation(Pure.class) != null).append("),\n");
+		}
+		source.append("\t\t};\n\t}\n\n");
+
+		// the interpreters held by the fields
+		TypeMirror interpreterType = processingEnv.getElementUtils().getTypeElement(INTERPRETER).asType();
+		List<VariableElement> fields = new ArrayList<>();
+		boolean reflection = false;
+		for (VariableElement field : ElementFilter.fieldsIn(interpreter.getEnclosedElements()))
+			if (processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(field.asType()), interpreterType)) {
+				fields.add(field);
+				reflection |= field.getModifiers().contains(Modifier.PRIVATE);
+			}
+		source.append("\t@Override\n\tpublic jointyc.analysis.semantic.Interpreter[] interpreters(jointyc.analysis.semantic.Interpreter interpreter) {\n");
+		if (reflection)
+			source.append("\t\treturn null;\n");
+		else {
+			source.append("\t\treturn new jointyc.analysis.semantic.Interpreter[] {");
+			for (int i = 0; i < fields.size(); i++)
+				source.append(i > 0 ? ", " : "").append("((").append(type).append(") interpreter).").append(fields.get(i).getSimpleName());
+			source.append("};\n");
+		}
+		source.append("\t}\n\n");
+
+		// the calls of the actions
+		source.append("\t@Override\n\tpublic Object invoke(jointyc.analysis.semantic.Interpreter interpreter, int action, Object[] arguments) throws Throwable {\n");
+		source.append("\t\tswitch (action) {\n");
+		for (int i = 0; i < actions.size(); i++) {
+			ExecutableElement method = actions.get(i);
+			StringBuilder arguments = new StringBuilder();
+			List<? extends VariableElement> params = method.getParameters();
+			for (int j = 0; j < params.size(); j++) {
+				TypeMirror parameter = params.get(j).asType();
+				String cast = parameter.getKind().isPrimitive()
+						? processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) parameter).getQualifiedName().toString()
+						: erasure(parameter);
+				arguments.append(j > 0 ? ", " : "");
+				if (!cast.equals(Object.class.getName()))
+					arguments.append("(").append(cast).append(") ");
+				arguments.append("arguments[").append(j).append("]");
+			}
+			String call = target(interpreter, method, type) + "." + method.getSimpleName() + "(" + arguments + ")";
+			source.append("\t\tcase ").append(i).append(":\n");
+			if (method.getReturnType().getKind() == TypeKind.VOID)
+				source.append("\t\t\t").append(call).append(";\n\t\t\treturn null;\n");
+			else
+				source.append("\t\t\treturn ").append(call).append(";\n");
+		}
+		source.append("\t\tdefault:\n\t\t\tthrow new IllegalArgumentException(\"action \" + action);\n\t\t}\n\t}\n\n");
+
+		// the calls of the actions that fit the primitive lane
+		for (boolean terminal : new boolean[] { false, true }) {
+			source.append("\t@Override\n\tpublic long invokePrimitive(jointyc.analysis.semantic.Interpreter interpreter, int action, ")
+					.append(terminal ? SYNTAX_TREE + " tree" : "long[] bits, int offset").append(") throws Throwable {\n");
+			source.append("\t\tswitch (action) {\n");
+			for (int i = 0; i < actions.size(); i++) {
+				ExecutableElement method = actions.get(i);
+				boolean terminalAction = method.getAnnotationsByType(TerminalToken.class).length > 0;
+				if (terminalAction != terminal || !primitive(method, terminal))
+					continue;
+				StringBuilder arguments = new StringBuilder();
+				List<? extends VariableElement> params = method.getParameters();
+				for (int j = 0; j < params.size(); j++)
+					arguments.append(j > 0 ? ", " : "").append(terminal ? "tree" : fromBits(params.get(j).asType().getKind(), "bits[offset + " + j + "]"));
+				String call = target(interpreter, method, type) + "." + method.getSimpleName() + "(" + arguments + ")";
+				source.append("\t\tcase ").append(i).append(":\n\t\t\treturn ").append(toBits(method.getReturnType().getKind(), call)).append(";\n");
+			}
+			source.append("\t\tdefault:\n\t\t\tthrow new IllegalArgumentException(\"action \" + action);\n\t\t}\n\t}\n\n");
+		}
+		source.setLength(source.length() - 1);
+		source.append("}\n");
+
+		String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+		try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, interpreter).openWriter()) {
+			writer.write(source.toString());
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR, "the dispatcher " + qualifiedName + " can not be written: " + e.getMessage(), interpreter);
+		}
+	}
+
+	// the receiver of the calls of an action
+	private static String target(TypeElement interpreter, ExecutableElement method, String type) {
+		return method.getModifiers().contains(Modifier.STATIC) ? type : "((" + type + ") interpreter)";
+	}
+}
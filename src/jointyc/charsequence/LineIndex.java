@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.charsequence;
+
+import java.util.Arrays;
+
+/**
+ * Maps the positions of a character sequence to lines and columns, both starting from 1.<br>
+ * The index records the start positions of the lines, so that a position is mapped by a binary search.
+ * The sequence is scanned lazily, only up to the greatest position requested so far, and each character is read at most once.
+ * This makes the index convenient for large sequences, such as {@link FileCharSequence}, which are expensive to read again.<br>
+ * The index can be shared by different threads.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public final class LineIndex {
+	private final CharSequence source;
+
+	//start positions of the scanned lines
+	private int[] lineStarts = new int[16];
+	private int lines = 1;
+
+	//the characters before this position are already scanned
+	private int scanned;
+
+	/**
+	 * Creates an index for the specified sequence
+	 * @param source the indexed sequence
+	 */
+	public LineIndex(CharSequence source) {
+		if(source == null)
+			throw new NullPointerException("null source");
+		this.source = source;
+	}
+
+	/**
+	 * Gets the indexed sequence
+	 * @return the indexed sequence
+	 */
+	public CharSequence source() {
+		return source;
+	}
+
+	/**
+	 * Gets the line of the specified position
+	 * @param position a position of the sequence, from 0 to its length
+	 * @return the line containing the position, starting from 1
+	 */
+	public synchronized int line(int position) {
+		scan(position);
+		int line = Arrays.binarySearch(lineStarts, 0, lines, position);
+		return line < 0 ? -line-1 : line+1;
+	}
+
+	/**
+	 * Gets the column of the specified position
+	 * @param position a position of the sequence, from 0 to its length
+	 * @return the column of the position in its line, starting from 1
+	 */
+	public synchronized int column(int position) {
+		return position - lineStarts[line(position)-1] + 1;
+	}
+
+	/**
+	 * Gets the start position of the specified line
+	 * @param line a line of the sequence, starting from 1
+	 * @return the position of the first character of the line
+	 * @throws IndexOutOfBoundsException if the sequence has not the specified line
+	 */
+	public synchronized int lineStart(int line) {
+		if(line < 1)
+			throw new IndexOutOfBoundsException("line < 1");
+		while(lines < line && scanned < source.length())
+			scan(scanned+1);
+		if(lines < line)
+			throw new IndexOutOfBoundsException("line > " + lines);
+		return lineStarts[line-1];
+	}
+
+	//scans the sequence up to the specified position, inclusive
+	private void scan(int position) {
+		if(position < 0 || position > source.length())
+			throw new IndexOutOfBoundsException("position: " + position + ", length: " + source.length());
+
+		for(; scanned < position; scanned++) {
+			if(source.charAt(scanned) == '\n') {
+				if(lines == lineStarts.length)
+					lineStarts = Arrays.copyOf(lineStarts, lines*2);
+				lineStarts[lines++] = scanned+1;
+			}
+		}
+	}
+}
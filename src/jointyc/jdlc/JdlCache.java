@@ -0,0 +1,264 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.jdlc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import jointyc.analysis.lexer.Lexicon;
+import jointyc.analysis.lexer.StandardLexer;
+import jointyc.analysis.parser.EditableParser;
+import jointyc.analysis.parser.Grammar;
+import jointyc.analysis.parser.StandardParser;
+import jointyc.analysis.parser.exception.InfiniteRecursionException;
+import jointyc.analysis.parser.exception.InvalidRuleNameException;
+
+/**
+ * Stores the languages compiled by a {@link JdlCompiler} in a directory, so that they are loaded without compiling their JDL sources again.<br>
+ * <br>
+ * A compiled language is stored as its lexicon, its rules and its axiom, in a file named by the SHA-256 hash of its JDL source.
+ * The file also stores the names and the hashes of the modules read by the compilation, which are read again when the file is loaded,
+ * so that a file is never used after a source changes.
+ * The files are written to temporary files and renamed, so that a directory can be shared by concurrent processes.<br>
+ * <br>
+ * The file format is versioned. All the numbers are stored in little-endian order and the strings in UTF-8, preceded by their length,
+ * or by -1 for the null strings.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+final class JdlCache {
+
+	private static final int MAGIC = 0x434C444A; //"JDLC"
+	private static final int VERSION = 2;
+
+	private static final String EXTENSION = ".jdlc";
+
+	private final File directory;
+
+	JdlCache(File directory) {
+		this.directory = directory;
+	}
+
+	File directory() {
+		return directory;
+	}
+
+	/**
+	 * Computes the key of a JDL source
+	 * @param source the JDL source
+	 * @return the key of the source, as a hexadecimal string
+	 */
+	static String key(CharSequence source) {
+		MessageDigest digest = digest();
+		digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+		StringBuilder key = new StringBuilder();
+		for(byte b : digest.digest(source.toString().getBytes(StandardCharsets.UTF_8)))
+			key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return key.toString();
+	}
+
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] hash(String module) {
+		return digest().digest(module.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Loads a compiled language.
+	 * @param key the key of the JDL source
+	 * @param interpreterClass the class of the interpreter of the language, that resolves the imported modules
+	 * @return a new parser for the language, with its lexer, or null if the language is not stored, its file is not valid,
+	 * or one of its imported modules has changed or can not be read
+	 */
+	EditableParser load(String key, Class<?> interpreterClass) {
+		Path file = new File(directory, key + EXTENSION).toPath();
+		if(!Files.isRegularFile(file))
+			return null;
+
+		//the file is read on the heap, since a mapping would lock the file against its replacement on some platforms
+		ByteBuffer buffer;
+		try {
+			buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			return null;
+		}
+
+		try {
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				return null;
+
+			byte[] hash = new byte[32];
+			for(int i=buffer.getInt(); i>0; i--) {
+				String filename = string(buffer);
+				buffer.get(hash);
+				try {
+					if(filename == null || !Arrays.equals(hash, hash(JdlInterpreter.readModule(interpreterClass, filename))))
+						return null;
+				} catch (IOException e) {
+					return null;
+				}
+			}
+
+			Lexicon lexicon = Lexicon.EMPTY;
+			for(int i=buffer.getInt(); i>0; i--) {
+				String type = string(buffer);
+				String regex = string(buffer);
+				String description = string(buffer);
+				lexicon = lexicon.with(type, regex, description, buffer.get() != 0);
+			}
+
+			StandardParser parser = new StandardParser();
+			String axiom = string(buffer);
+			for(int i=buffer.getInt(); i>0; i--) {
+				String head = string(buffer);
+				String[] production = new String[buffer.getInt()];
+				for(int j=0; j<production.length; j++)
+					production[j] = string(buffer);
+				parser.addRule(head, production);
+			}
+			parser.setAxiom(axiom);
+			parser.setLexer(new StandardLexer(lexicon));
+			return parser;
+		}
+		catch(BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException
+				| InvalidRuleNameException | InfiniteRecursionException e) {
+			//a corrupted file is replaced by the next store
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a compiled language. The language is not stored if it is not defined by a {@link StandardParser} and a {@link StandardLexer},
+	 * or if an I/O error occurs.
+	 * @param key the key of the JDL source
+	 * @param parser the parser of the language, with its lexer
+	 * @param modules the sources of the modules read by the compilation, by file name
+	 */
+	void store(String key, EditableParser parser, Map<String, String> modules) {
+		if(!(parser instanceof StandardParser) || !(parser.getLexer() instanceof StandardLexer))
+			return;
+		Lexicon lexicon = ((StandardLexer) parser.getLexer()).lexicon();
+		Grammar grammar = ((StandardParser) parser).getGrammar();
+
+		List<byte[]> strings = new ArrayList<>();
+		int size = 4*4;
+		for(String filename : modules.keySet())
+			size += put(strings, filename) + 32;
+		for(int i=0; i<lexicon.size(); i++)
+			size += put(strings, lexicon.type(i)) + put(strings, lexicon.pattern(i).pattern()) + put(strings, lexicon.description(i)) + 1;
+		size += put(strings, grammar.getAxiom()) + 4;
+		for(int id=0; id<grammar.productionCount(); id++) {
+			size += put(strings, grammar.productionHead(id)) + 4;
+			for(String symbol : grammar.production(id))
+				size += put(strings, symbol);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		int string = 0;
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(modules.size());
+		for(String module : modules.values()) {
+			string(buffer, strings.get(string++));
+			buffer.put(hash(module));
+		}
+		buffer.putInt(lexicon.size());
+		for(int i=0; i<lexicon.size(); i++) {
+			string(buffer, strings.get(string++));
+			string(buffer, strings.get(string++));
+			string(buffer, strings.get(string++));
+			buffer.put((byte) (lexicon.skippable(i) ? 1 : 0));
+		}
+		string(buffer, strings.get(string++));
+		buffer.putInt(grammar.productionCount());
+		for(int id=0; id<grammar.productionCount(); id++) {
+			string(buffer, strings.get(string++));
+			List<String> production = grammar.production(id);
+			buffer.putInt(production.size());
+			for(int i=0; i<production.size(); i++)
+				string(buffer, strings.get(string++));
+		}
+		buffer.flip();
+
+		Path temporary = null;
+		try {
+			Files.createDirectories(directory.toPath());
+			temporary = Files.createTempFile(directory.toPath(), key, ".tmp");
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)){
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			Path file = new File(directory, key + EXTENSION).toPath();
+			try {
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			temporary = null;
+		} catch (IOException e) {
+			//the language is compiled again by the next process
+		} finally {
+			if(temporary != null)
+				temporary.toFile().delete();
+		}
+	}
+
+	//adds the encoding of a string, returning its size in the file
+	private static int put(List<byte[]> strings, String string) {
+		byte[] bytes = string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+		strings.add(bytes);
+		return 4 + (bytes == null ? 0 : bytes.length);
+	}
+
+	private static void string(ByteBuffer buffer, byte[] bytes) {
+		if(bytes == null)
+			buffer.putInt(-1);
+		else
+			buffer.putInt(bytes.length).put(bytes);
+	}
+
+	private static String string(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if(length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
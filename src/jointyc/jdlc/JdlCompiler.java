@@ -45,6 +45,7 @@ import jointyc.charsequence.FileCharSequence;
 public class JdlCompiler {
 	private final JdlInterpreter interpreter;
 	final StandardCompiler compiler;
+	private volatile JdlCache cache;
 	
 	/**
 	 * Construct a new JDL Compiler
@@ -183,12 +184,45 @@ public class JdlCompiler {
 	 * @throws SemanticException if semantic errors are discovered
 	 */
 	public StandardCompiler compileSource(CharSequence source, Interpreter interpreter) throws UnexpectedSymbolException, SemanticException{
+		JdlCache cache = this.cache;
+		String key = null;
+		if(cache != null){
+			key = JdlCache.key(source);
+			EditableParser parser = cache.load(key, interpreter.getClass());
+			if(parser != null)
+				return new StandardCompiler(parser, interpreter);
+		}
+		
+		//every language is built by a new parser, so that it does not share the rules of the previous ones
+		this.interpreter.reset();
 		this.interpreter.interpreterClass = interpreter.getClass();
 		EditableParser parser = (EditableParser) compiler.compile(source);
-		this.interpreter.reset();
+		if(cache != null)
+			cache.store(key, parser, this.interpreter.modules());
 		return new StandardCompiler(parser, interpreter);
 	}
 	
+	/**
+	 * Sets the directory of the cache of the compiled languages. When the cache is enabled, the lexicon, the rules and the axiom
+	 * of each compiled language are stored in the directory, in a binary file keyed by the hash of its JDL source, with the hashes of the sources of its imported modules.
+	 * The next compilations of the same sources, also by other processes, load the language from its file, without compiling the JDL sources.<br>
+	 * The errors of the cache are ignored, and the sources are compiled as if the cache was disabled.
+	 * @param directory the cache directory, which is created if it does not exist, or null to disable the cache (default)
+	 */
+	public void setCacheDirectory(File directory){
+		cache = directory == null ? null : new JdlCache(directory);
+	}
+	
+	/**
+	 * Gets the directory of the cache of the compiled languages
+	 * @return the cache directory, or null if the cache is disabled
+	 * @see #setCacheDirectory(File)
+	 */
+	public File getCacheDirectory(){
+		JdlCache cache = this.cache;
+		return cache == null ? null : cache.directory();
+	}
+	
 	/**
 	 * Compile a JDL text file and creates a StandardCompiler with the specified interpreter
 	 * @param file the path of the JDL file
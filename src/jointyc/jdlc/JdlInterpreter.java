@@ -23,8 +23,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import jointyc.analysis.lexer.EditableLexer;
 import jointyc.analysis.lexer.StandardLexer;
@@ -64,6 +66,9 @@ class JdlInterpreter implements Interpreter {
 	//list of imported language modules
 	private LinkedList<String> imports = new LinkedList<>();
 	
+	//sources of the modules read by the current compilation, by file name
+	private final Map<String, String> modules = new LinkedHashMap<>();
+	
 	//name of the current (sub)language
 	private String languageName = null;
 	
@@ -79,8 +84,24 @@ class JdlInterpreter implements Interpreter {
 		this.lexer = new StandardLexer();
 	}
 	
+	/**
+	 * Prepares this interpreter for the compilation of a new language, that is built by a new parser and a new lexer
+	 */
 	public void reset() {
 		imports.clear();
+		modules.clear();
+		parser = new StandardParser();
+		lexer = new StandardLexer();
+		languageName = null;
+		assiome = null;
+	}
+	
+	/**
+	 * Gets the modules read by the current compilation
+	 * @return the sources of the imported modules, by file name, in order of reading
+	 */
+	Map<String, String> modules() {
+		return modules;
 	}
 
 	@TerminalToken(value="languageName")
@@ -101,7 +122,7 @@ class JdlInterpreter implements Interpreter {
 	@TerminalToken(value="ruleName")
 	@TerminalToken(value="ruleProduct")
 	private String getToken(SyntaxTree tree) {
-		return tree.token().toString();
+		return tree.internedToken();
 	}
 
 	@TerminalToken(value="type")
@@ -153,6 +174,23 @@ class JdlInterpreter implements Interpreter {
 	//the JdlCompiler which is using this interpreter
 	@NonTerminalToken(ruleHead="import")
 	private void importLanguage(String filename) throws IOException, UnexpectedSymbolException, SemanticException {
+		String source = readModule(interpreterClass, filename);
+		modules.put(filename, source);
+		
+		String tmpLang = languageName;
+		compiler.compiler.compile(source);
+		languageName = tmpLang;
+		assiome = null;
+	}
+	
+	/**
+	 * Reads an imported module, searching it among the resources of the interpreter class, then in the file system
+	 * @param interpreterClass the class of the interpreter of the language that imports the module
+	 * @param filename the name of the imported file
+	 * @return the JDL source of the module
+	 * @throws IOException if the module can not be read
+	 */
+	static String readModule(Class<?> interpreterClass, String filename) throws IOException {
 		String source;
 		InputStream input;
 	
@@ -172,11 +210,7 @@ class JdlInterpreter implements Interpreter {
 		}
 		else
 			source = new String(Files.readAllBytes(new File(filename).toPath()));
-		
-		String tmpLang = languageName;
-		compiler.compiler.compile(source);
-		languageName = tmpLang;
-		assiome = null;
+		return source;
 	}
 	
 	@NonTerminalToken(ruleHead="lexRule")
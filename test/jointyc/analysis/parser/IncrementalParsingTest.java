@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2017 Salvatore Giamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  
+ **/
+
+package jointyc.analysis.parser;
+
+import java.util.Random;
+
+import jointyc.analysis.lexer.StandardLexer;
+import jointyc.analysis.parser.exception.UnexpectedSymbolException;
+
+/**
+ * Checks that the incremental parsings produce the same syntax trees of the full parsings of the edited sources
+ * (see {@link StandardParser#parse(CharSequence, SyntaxTree, TextEdit)}).<br>
+ * The lexicon contains a type whose tokens depend on characters far from their start (a string closed by a quote),
+ * so that the subtrees before an edit are reused only if the lexer reports all the characters its searches depended on.<br>
+ * The test has no dependencies: it is run by its main method, and fails with an {@link AssertionError}.
+ * 
+ * @author Salvatore Giamp
+ *
+ */
+public class IncrementalParsingTest {
+
+	private static final String ALPHABET = "ab\" \n";
+
+	private final StandardParser parser = new StandardParser();
+
+	public IncrementalParsingTest() throws Exception {
+		StandardLexer lexer = new StandardLexer();
+		lexer.addType("str", "\"[^\"]*\"", "string");
+		lexer.addType("q", "\"", "quote");
+		lexer.addType("id", "[a-z]+", "identifier");
+		lexer.addType("ws", "\\s+", "space", true);
+
+		parser.addRule("prog", "item", "prog");
+		parser.addRule("prog", "item");
+		parser.addRule("item", "$str");
+		parser.addRule("item", "$q");
+		parser.addRule("item", "$id");
+		parser.setLexer(lexer);
+	}
+
+	//parses an edited source, both incrementally and from scratch, and compares the trees
+	private SyntaxTree check(SyntaxTree previous, String source, TextEdit edit) {
+		String full, incremental;
+		SyntaxTree tree = null;
+		try {
+			full = parser.parse(source).toString();
+		} catch (UnexpectedSymbolException e) {
+			full = e.toString();
+		}
+		try {
+			tree = parser.parse(source, previous, edit);
+			incremental = tree.toString();
+		} catch (UnexpectedSymbolException e) {
+			incremental = e.toString();
+		}
+		if(!full.equals(incremental))
+			throw new AssertionError("incremental parsing of \"" + source + "\" after " + edit + "\nexpected: " + full + "\nfound:    " + incremental);
+		return tree;
+	}
+
+	//a quote appended at the end turns the tokens following the previous quote into a string
+	public void testClosingQuote() throws UnexpectedSymbolException {
+		String source = "aa \" bb cc dd";
+		SyntaxTree previous = parser.parse(source);
+		check(previous, source + "\"", new TextEdit(source.length(), 0, 1));
+	}
+
+	public void testRandomEdits() throws UnexpectedSymbolException {
+		Random random = new Random(42);
+		for(int test=0; test<500; test++) {
+			String source = random(random, 1 + random.nextInt(20));
+			SyntaxTree previous = parser.parse(source);
+			for(int step=0; step<5; step++) {
+				int position = random.nextInt(source.length() + 1);
+				int removed = Math.min(random.nextInt(3), source.length() - position);
+				String inserted = random(random, random.nextInt(3));
+				String edited = source.substring(0, position) + inserted + source.substring(position + removed);
+
+				SyntaxTree tree = check(previous, edited, new TextEdit(position, removed, inserted.length()));
+				if(tree != null) {
+					source = edited;
+					previous = tree;
+				}
+			}
+		}
+	}
+
+	private static String random(Random random, int length) {
+		StringBuilder source = new StringBuilder();
+		while(source.length() < length || source.toString().trim().isEmpty())
+			source.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		return source.toString();
+	}
+
+	public static void main(String[] args) throws Exception {
+		IncrementalParsingTest test = new IncrementalParsingTest();
+		test.testClosingQuote();
+		test.testRandomEdits();
+		System.out.println("IncrementalParsingTest: ok");
+	}
+}